@@ -0,0 +1,239 @@
+// This class assigns all the ride requests of one tick together instead of one at a time in queue order.
+// Each request is offered only its nearest candidate vehicles (from the VehicleIndex), which gives a sparse
+// request x vehicle cost matrix where the cost is the great-circle distance from the vehicle to the pick-up point.
+// The assignment is solved as a min-cost flow: source -> request (1 unit) -> candidate vehicle -> sink (as many units
+// as the vehicle has free slots). Successive shortest paths with Dijkstra and node potentials add one request per
+// augmentation, so the result first assigns as many requests as the candidates allow and then has the smallest total
+// pick-up distance among those assignments.
+// Solving is limited by a time budget. If it runs out, assign returns null and the caller falls back to greedy.
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+public class BatchAssigner {
+
+    public static final int DEFAULT_CANDIDATES = 8;                 // Nearest vehicles offered to each request
+    public static final long DEFAULT_TIME_BUDGET_NANOS = 50_000_000L; // 50 ms per tick
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 128;          // Requests from which candidates are gathered in parallel
+
+    private VehicleIndex vehicleIndex;
+    private int candidates;
+    private long timeBudgetNanos;
+    private int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+
+    // Residual graph of the last solve, edges e and e ^ 1 are each other's reverse
+    private int[] head;
+    private int[] next;
+    private int[] to;
+    private int[] capacity;
+    private double[] cost;
+    private int edgeCount;
+
+    private boolean lastTimedOut;
+    private int lastAssignedCount;
+    private double lastTotalCost;
+
+    public BatchAssigner(VehicleIndex vehicleIndex) {
+        this(vehicleIndex, DEFAULT_CANDIDATES, DEFAULT_TIME_BUDGET_NANOS);
+    }
+
+    public BatchAssigner(VehicleIndex vehicleIndex, int candidates, long timeBudgetNanos) {
+        //Constructor
+        this.vehicleIndex = vehicleIndex;
+        this.candidates = candidates;
+        this.timeBudgetNanos = timeBudgetNanos;
+    }
+
+    // Method to assign a batch of requests. freeSlots gives how many more requests a vehicle may take, vehicles with
+    // none are not candidates. Returns the vehicle for each request (null where none was found), or null if the time
+    // budget ran out before the assignment was optimal.
+    public Vehicle[] assign(List<RideRequest> requests, ToIntFunction<Vehicle> freeSlots) {
+        long started = System.nanoTime();
+        lastTimedOut = false;
+        lastAssignedCount = 0;
+        lastTotalCost = 0;
+        int r = requests.size();
+        Vehicle[] assigned = new Vehicle[r];
+        if (r == 0) {
+            return assigned;
+        }
+
+        // Candidate vehicles of each request, each vehicle gets one flow node the first time it is seen
+        Map<Vehicle, Integer> vehicleNodes = new IdentityHashMap<>();
+        Vehicle[] nodeVehicles = new Vehicle[Math.max(16, r * candidates)];
+        @SuppressWarnings("unchecked")
+        List<Vehicle>[] candidateLists = (List<Vehicle>[]) new List<?>[r];
+        int vehicleCount = 0;
+        int candidateCount = 0;
+        // The nearest-vehicle queries only read the fleet, so a large batch runs them in parallel
+        ParallelScan.forEach(r, parallelThreshold, i -> candidateLists[i] = vehicleIndex.nearest(requests.get(i).getPickUpPoint(),
+                candidates, vehicle -> freeSlots.applyAsInt(vehicle) > 0));
+        for (int i = 0; i < r; i++) {
+            for (Vehicle vehicle : candidateLists[i]) {
+                if (!vehicleNodes.containsKey(vehicle)) {
+                    vehicleNodes.put(vehicle, vehicleCount);
+                    nodeVehicles[vehicleCount++] = vehicle;
+                }
+            }
+            candidateCount += candidateLists[i].size();
+        }
+
+        // Nodes: 0 .. r - 1 requests, r .. r + vehicleCount - 1 vehicles, then the sink. Each request also has an edge
+        // straight to the sink that stands for leaving it unassigned. Its cost is more than any path of real edges can
+        // save, so the flow only uses it when no vehicle can be freed up for the request.
+        int sink = r + vehicleCount;
+        int nodeCount = sink + 1;
+        reset(nodeCount, 2 * (candidateCount + r + vehicleCount));
+        double unassignedCost = 1.0;
+        for (int i = 0; i < r; i++) {
+            Node pickUp = requests.get(i).getPickUpPoint();
+            for (Vehicle vehicle : candidateLists[i]) {
+                double distance = GeoDistance.haversine(vehicle.getCurrentNode(), pickUp);
+                addEdge(i, r + vehicleNodes.get(vehicle), 1, distance);
+                unassignedCost += distance;
+            }
+        }
+        for (int i = 0; i < r; i++) {
+            addEdge(i, sink, 1, unassignedCost);
+        }
+        for (int v = 0; v < vehicleCount; v++) {
+            addEdge(r + v, sink, freeSlots.applyAsInt(nodeVehicles[v]), 0.0);
+        }
+
+        // Requests are added one at a time as in the Hungarian algorithm: a Dijkstra from the new request over the
+        // residual graph, with reduced costs kept non-negative by node potentials, finds the cheapest way to fit it in,
+        // possibly moving earlier requests to other vehicles. It stops once the sink is reached, so it mostly stays
+        // among the nearby requests and vehicles.
+        double[] potential = new double[nodeCount];
+        double[] distance = new double[nodeCount];
+        Arrays.fill(distance, Double.POSITIVE_INFINITY);
+        int[] previousEdge = new int[nodeCount];
+        int[] touched = new int[nodeCount];
+        IndexedMinHeap queue = new IndexedMinHeap(nodeCount);
+        for (int i = 0; i < r; i++) {
+            if (System.nanoTime() - started > timeBudgetNanos) {
+                lastTimedOut = true;
+                return null;
+            }
+            // The new request has no incoming edges yet, so its potential can be set to make all of its edges non-negative
+            potential[i] = Double.NEGATIVE_INFINITY;
+            for (int e = head[i]; e >= 0; e = next[e]) {
+                potential[i] = Math.max(potential[i], potential[to[e]] - cost[e]);
+            }
+            int touchedCount = 0;
+            distance[i] = 0.0;
+            previousEdge[i] = -1;
+            touched[touchedCount++] = i;
+            queue.clear();
+            queue.insertOrDecrease(i, 0.0);
+            while (queue.peek() != sink) { // The unassigned edge means the sink is always reached
+                int u = queue.poll();
+                for (int e = head[u]; e >= 0; e = next[e]) {
+                    if (capacity[e] == 0) continue;
+                    int v = to[e];
+                    // Reduced cost, clamped against rounding so Dijkstra never sees a negative edge
+                    double candidate = distance[u] + Math.max(0.0, cost[e] + potential[u] - potential[v]);
+                    if (candidate < distance[v]) {
+                        if (distance[v] == Double.POSITIVE_INFINITY) {
+                            touched[touchedCount++] = v;
+                        }
+                        distance[v] = candidate;
+                        previousEdge[v] = e;
+                        queue.insertOrDecrease(v, candidate);
+                    }
+                }
+            }
+            // Raise the potentials of the nodes settled before the sink. Every potential is then lowered by the sink's
+            // distance, which leaves reduced costs alone and means only those nodes have to be touched.
+            double sinkDistance = distance[sink];
+            for (int t = 0; t < touchedCount; t++) {
+                int v = touched[t];
+                if (distance[v] < sinkDistance) {
+                    potential[v] += distance[v] - sinkDistance;
+                }
+                distance[v] = Double.POSITIVE_INFINITY;
+            }
+            for (int v = sink; v != i; v = to[previousEdge[v] ^ 1]) {
+                capacity[previousEdge[v]]--;
+                capacity[previousEdge[v] ^ 1]++;
+            }
+        }
+
+        // A request is assigned to the vehicle whose edge from it carries flow
+        for (int i = 0; i < r; i++) {
+            for (int e = head[i]; e >= 0; e = next[e]) {
+                if ((e & 1) == 0 && capacity[e] == 0 && to[e] != sink) {
+                    assigned[i] = nodeVehicles[to[e] - r];
+                    lastAssignedCount++;
+                    lastTotalCost += cost[e];
+                }
+            }
+        }
+        return assigned;
+    }
+
+    private void reset(int nodeCount, int edgeCapacity) {
+        if (head == null || head.length < nodeCount) {
+            head = new int[nodeCount];
+        }
+        Arrays.fill(head, 0, nodeCount, -1);
+        if (to == null || to.length < edgeCapacity) {
+            next = new int[edgeCapacity];
+            to = new int[edgeCapacity];
+            capacity = new int[edgeCapacity];
+            cost = new double[edgeCapacity];
+        }
+        edgeCount = 0;
+    }
+
+    // Add an edge and its zero-capacity reverse
+    private void addEdge(int from, int target, int edgeCapacity, double edgeCost) {
+        to[edgeCount] = target;
+        capacity[edgeCount] = edgeCapacity;
+        cost[edgeCount] = edgeCost;
+        next[edgeCount] = head[from];
+        head[from] = edgeCount++;
+        to[edgeCount] = from;
+        capacity[edgeCount] = 0;
+        cost[edgeCount] = -edgeCost;
+        next[edgeCount] = head[target];
+        head[target] = edgeCount++;
+    }
+
+    // Whether the last call ran out of time and returned null
+    public boolean lastTimedOut() {
+        return lastTimedOut;
+    }
+
+    public int getLastAssignedCount() {
+        return lastAssignedCount;
+    }
+
+    // Total pick-up distance in km of the last assignment
+    public double getLastTotalCost() {
+        return lastTotalCost;
+    }
+
+    public int getCandidates() {
+        return candidates;
+    }
+
+    public void setCandidates(int candidates) {
+        this.candidates = candidates;
+    }
+
+    public void setParallelThreshold(int parallelThreshold) {
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    public long getTimeBudgetNanos() {
+        return timeBudgetNanos;
+    }
+
+    public void setTimeBudgetNanos(long timeBudgetNanos) {
+        this.timeBudgetNanos = timeBudgetNanos;
+    }
+}
@@ -0,0 +1,157 @@
+// This class is a bidirectional A* over a RoadNetwork.
+// The forward search runs from the start on outgoing edges and the backward search from the stop on incoming edges,
+// so it stays correct for directed graphs. Both use the average potential
+//     pf(v) = (h(v, stop) - h(start, v)) / 2,  pr(v) = -pf(v)
+// which keeps the reduced edge costs of both searches non-negative when the heuristic is consistent. With these
+// potentials the search can stop as soon as the two smallest queue keys add up to the best path found so far.
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class BidirectionalAStar {
+
+    private RoadNetwork graph;
+    // Search state of each thread, the forward workspace also caches the potentials and the meeting node
+    private ThreadLocal<SearchWorkspace> forwardWorkspaces = new ThreadLocal<>();
+    private ThreadLocal<SearchWorkspace> backwardWorkspaces = new ThreadLocal<>();
+
+    public BidirectionalAStar(RoadNetwork graph) {
+        //Constructor
+        this.graph = graph;
+    }
+
+    public RoadNetwork getGraph() {
+        return graph;
+    }
+
+    // Number of nodes settled by the calling thread's last search, both directions together
+    public int getLastSettledCount() {
+        return forward().getSettledCount() + backward().getSettledCount();
+    }
+
+    // Method to get the shortest path cost between two nodes, infinity if there is no path
+    public double distance(int start, int stop, Heuristic heuristic) {
+        return search(start, stop, heuristic);
+    }
+
+    // Method to get the first node after start on a shortest path to stop, or -1 if there is none
+    public int nextHop(int start, int stop, Heuristic heuristic) {
+        if (start == stop || Double.isInfinite(search(start, stop, heuristic))) {
+            return -1;
+        }
+        SearchWorkspace forward = forward();
+        int meetingNode = forward.getMeetingNode();
+        if (meetingNode == start) {
+            return backward().getParent(start);
+        }
+        int node = meetingNode;
+        while (forward.getParent(node) != start) {
+            node = forward.getParent(node);
+        }
+        return node;
+    }
+
+    // Method to get the nodes after start up to and including stop, empty if they are the same node and null if there is no path
+    public List<Integer> findPath(int start, int stop, Heuristic heuristic) {
+        if (Double.isInfinite(search(start, stop, heuristic))) {
+            return null;
+        }
+        SearchWorkspace forward = forward();
+        SearchWorkspace backward = backward();
+        int meetingNode = forward.getMeetingNode();
+        List<Integer> path = new ArrayList<>();
+        for (int node = meetingNode; node != start; node = forward.getParent(node)) {
+            path.add(node);
+        }
+        Collections.reverse(path);
+        for (int node = meetingNode; node != stop; ) {
+            node = backward.getParent(node); // Next node towards the stop
+            path.add(node);
+        }
+        return path;
+    }
+
+    private double search(int start, int stop, Heuristic heuristic) {
+        SearchWorkspace forward = forward();
+        SearchWorkspace backward = backward();
+        IndexedMinHeap forwardQueue = forward.getOpenSet();
+        IndexedMinHeap backwardQueue = backward.getOpenSet();
+        forward.reset();
+        backward.reset();
+
+        double best = Double.POSITIVE_INFINITY;
+        if (start == stop) {
+            forward.setMeetingNode(start);
+            best = 0.0;
+        }
+        forward.setGScore(start, 0.0);
+        backward.setGScore(stop, 0.0);
+        forwardQueue.insertOrDecrease(start, potential(forward, start, start, stop, heuristic));
+        backwardQueue.insertOrDecrease(stop, -potential(forward, stop, start, stop, heuristic));
+
+        while (!forwardQueue.isEmpty() && !backwardQueue.isEmpty()) {
+            double forwardKey = forwardQueue.getKey(forwardQueue.peek());
+            double backwardKey = backwardQueue.getKey(backwardQueue.peek());
+            if (forwardKey + backwardKey >= best) break; // No unexplored path can beat the best meeting
+
+            if (forwardKey <= backwardKey) {
+                int node = forwardQueue.poll();
+                forward.close(node);
+                double nodeCost = forward.getGScore(node);
+                for (int edge = graph.firstEdge(node), end = graph.endEdge(node); edge < end; edge++) {
+                    int next = graph.getTarget(edge);
+                    if (forward.isClosed(next)) continue;
+                    double cost = nodeCost + graph.getWeight(edge);
+                    if (cost < forward.getGScore(next)) {
+                        forward.setGScore(next, cost);
+                        forward.setParent(next, node);
+                        forwardQueue.insertOrDecrease(next, cost + potential(forward, next, start, stop, heuristic));
+                        if (cost + backward.getGScore(next) < best) {
+                            best = cost + backward.getGScore(next);
+                            forward.setMeetingNode(next);
+                        }
+                    }
+                }
+            } else {
+                int node = backwardQueue.poll();
+                backward.close(node);
+                double nodeCost = backward.getGScore(node);
+                for (int i = graph.firstInEdge(node), end = graph.endInEdge(node); i < end; i++) {
+                    int edge = graph.getInEdge(i);
+                    int previous = graph.getSource(edge);
+                    if (backward.isClosed(previous)) continue;
+                    double cost = nodeCost + graph.getWeight(edge);
+                    if (cost < backward.getGScore(previous)) {
+                        backward.setGScore(previous, cost);
+                        backward.setParent(previous, node);
+                        backwardQueue.insertOrDecrease(previous, cost - potential(forward, previous, start, stop, heuristic));
+                        if (cost + forward.getGScore(previous) < best) {
+                            best = cost + forward.getGScore(previous);
+                            forward.setMeetingNode(previous);
+                        }
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    // Forward potential of a node, computed once per search and cached in the forward workspace
+    private static double potential(SearchWorkspace forward, int node, int start, int stop, Heuristic heuristic) {
+        double potential = forward.getHScore(node);
+        if (Double.isNaN(potential)) {
+            potential = (heuristic.estimate(node, stop) - heuristic.estimate(start, node)) / 2.0;
+            forward.setHScore(node, potential);
+        }
+        return potential;
+    }
+
+    private SearchWorkspace forward() {
+        return SearchWorkspace.forThread(forwardWorkspaces, graph.getNodeCount());
+    }
+
+    private SearchWorkspace backward() {
+        return SearchWorkspace.forThread(backwardWorkspaces, graph.getNodeCount());
+    }
+}
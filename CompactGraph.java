@@ -0,0 +1,189 @@
+// This class is a frozen, compressed sparse row (CSR) copy of a Graph.
+// Nodes get dense int ids and the outgoing edges of node u are targets[offsets[u]] .. targets[offsets[u + 1] - 1],
+// so routing can scan neighbours through primitive arrays without touching the HashMap or Edge objects.
+
+import java.util.Arrays;
+import java.util.List;
+
+public class CompactGraph implements RoadNetwork {
+
+    private int[] offsets;       // Start of each node's edges in targets/weights, with one extra entry at the end
+    private int[] targets;       // Dense id of the end node of each edge
+    private double[] weights;    // Travel cost of each edge
+    private volatile int[] reverseOffsets; // Same layout for incoming edges, built on first use
+    private int[] reverseEdges;   // Edge index (into targets/weights) of each incoming edge
+    private int[] sources;        // Start node of each edge, built with the reverse adjacency
+    private double[] latitudes;  // Latitude of each node
+    private double[] longitudes; // Longitude of each node
+    private Node[] nodes;        // Original node for each dense id
+    private NodeRegistry registry; // Dense id of each original node, ids past nodes.length were added after the copy
+
+    private CompactGraph(NodeRegistry registry, Node[] nodes, int[] offsets, int[] targets, double[] weights) {
+        //Constructor
+        this.nodes = nodes;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+        this.latitudes = new double[nodes.length];
+        this.longitudes = new double[nodes.length];
+        this.registry = registry;
+        for (int i = 0; i < nodes.length; i++) {
+            latitudes[i] = nodes[i].getLatitude();
+            longitudes[i] = nodes[i].getLongitude();
+        }
+    }
+
+    // Method to build the compact form of a graph, node ids are the indices of the graph's node registry
+    public static CompactGraph fromGraph(Graph graph) {
+        NodeRegistry registry = graph.getNodeRegistry();
+        List<Node> graphNodes = graph.getNodes();
+        Node[] nodes = graphNodes.toArray(new Node[0]);
+
+        int[] offsets = new int[nodes.length + 1];
+        for (int i = 0; i < nodes.length; i++) {
+            offsets[i + 1] = offsets[i] + graph.getEdges(nodes[i]).size();
+        }
+        int[] targets = new int[offsets[nodes.length]];
+        double[] weights = new double[targets.length];
+        for (int i = 0; i < nodes.length; i++) {
+            int edge = offsets[i];
+            for (Edge e : graph.getEdges(nodes[i])) {
+                targets[edge] = registry.indexOf(e.getEdgeEnd());
+                weights[edge] = e.getWeight();
+                edge++;
+            }
+        }
+        return new CompactGraph(registry, nodes, offsets, targets, weights);
+    }
+
+    // Method to wrap CSR arrays that were built directly, such as by RoadNetworkImporter, node ids are the registry indices
+    public static CompactGraph fromArrays(NodeRegistry registry, int[] offsets, int[] targets, double[] weights) {
+        return new CompactGraph(registry, registry.getNodes().toArray(new Node[0]), offsets, targets, weights);
+    }
+
+    @Override
+    public int getNodeCount() {
+        return nodes.length;
+    }
+
+    // Number of directed edges, an undirected road counts twice
+    @Override
+    public int getEdgeCount() {
+        return targets.length;
+    }
+
+    // Index of the first outgoing edge of a node
+    @Override
+    public int firstEdge(int node) {
+        return offsets[node];
+    }
+
+    // Index one past the last outgoing edge of a node
+    @Override
+    public int endEdge(int node) {
+        return offsets[node + 1];
+    }
+
+    @Override
+    public int getTarget(int edge) {
+        return targets[edge];
+    }
+
+    @Override
+    public double getWeight(int edge) {
+        return weights[edge];
+    }
+
+    // Index of the first incoming edge of a node in the reverse adjacency
+    @Override
+    public int firstInEdge(int node) {
+        buildReverseAdjacency();
+        return reverseOffsets[node];
+    }
+
+    // Index one past the last incoming edge of a node in the reverse adjacency
+    @Override
+    public int endInEdge(int node) {
+        buildReverseAdjacency();
+        return reverseOffsets[node + 1];
+    }
+
+    // Forward edge index of the i-th entry of the reverse adjacency, use getSource/getWeight on the result
+    @Override
+    public int getInEdge(int index) {
+        return reverseEdges[index];
+    }
+
+    @Override
+    public int getSource(int edge) {
+        buildReverseAdjacency();
+        return sources[edge];
+    }
+
+    // Build the incoming edge lists, so searches that run backwards stay correct once edges are not always paired
+    private void buildReverseAdjacency() {
+        if (reverseOffsets != null) return;
+        int n = nodes.length;
+        int[] edgeSources = new int[targets.length];
+        int[] inOffsets = new int[n + 1];
+        for (int u = 0; u < n; u++) {
+            for (int edge = offsets[u]; edge < offsets[u + 1]; edge++) {
+                edgeSources[edge] = u;
+                inOffsets[targets[edge] + 1]++;
+            }
+        }
+        for (int v = 0; v < n; v++) {
+            inOffsets[v + 1] += inOffsets[v];
+        }
+        int[] fill = Arrays.copyOf(inOffsets, n);
+        int[] inEdges = new int[targets.length];
+        for (int edge = 0; edge < targets.length; edge++) {
+            inEdges[fill[targets[edge]]++] = edge;
+        }
+        sources = edgeSources;
+        reverseEdges = inEdges;
+        reverseOffsets = inOffsets;
+    }
+
+    // Method to get a checksum of the topology and weights, used to tell whether files derived from the graph are stale
+    @Override
+    public long fingerprint() {
+        long hash = 1125899906842597L;
+        hash = 31 * hash + nodes.length;
+        for (int i = 0; i < targets.length; i++) {
+            hash = 31 * hash + targets[i];
+            hash = 31 * hash + Double.doubleToLongBits(weights[i]);
+        }
+        for (int i = 0; i < offsets.length; i++) {
+            hash = 31 * hash + offsets[i];
+        }
+        return hash;
+    }
+
+    @Override
+    public double getLatitude(int node) {
+        return latitudes[node];
+    }
+
+    @Override
+    public double getLongitude(int node) {
+        return longitudes[node];
+    }
+
+    @Override
+    public Node getNode(int node) {
+        return nodes[node];
+    }
+
+    // Method to get the dense id of a node, or -1 if it is not part of this graph
+    @Override
+    public int indexOf(Node node) {
+        int index = registry.indexOf(node);
+        return index < nodes.length ? index : -1;
+    }
+
+    // Method to estimate the bytes held by the primitive arrays (excludes the Node lookup tables)
+    public long estimateArrayBytes() {
+        return 4L * (offsets.length + targets.length) + 8L * (weights.length + latitudes.length + longitudes.length);
+    }
+}
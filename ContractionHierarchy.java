@@ -0,0 +1,420 @@
+// This class is a contraction hierarchy built from a RoadNetwork.
+// Preprocessing contracts nodes one at a time (least important first) and adds shortcut edges so shortest path
+// distances are preserved. A query then only runs two small Dijkstra searches that both go "upward" in the order,
+// one forward from the start and one backward from the stop, and meets in the middle.
+// Every shortcut remembers the node it skips so paths, and the next hop a vehicle needs, can be unpacked.
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class ContractionHierarchy {
+
+    private static final int WITNESS_SETTLE_LIMIT = 500; // Bound on each witness search, a missed witness only adds an unneeded shortcut
+
+    private RoadNetwork graph;  // Graph the hierarchy was built from
+    private int[] rank;          // Contraction order of each node, higher means more important
+
+    // All hierarchy edges (original edges plus shortcuts)
+    private int[] edgeFrom;
+    private int[] edgeTo;
+    private double[] edgeWeight;
+    private int[] edgeMiddle;    // Contracted node a shortcut skips over, -1 for original edges
+    private LongIntHashMap edgeLookup; // Cheapest hierarchy edge for each (from, to) pair, used to unpack shortcuts
+
+    // Upward edges for the forward search: up[upOffsets[u] .. upOffsets[u + 1]) go from u to a higher ranked node
+    private int[] upOffsets;
+    private int[] upEdges;
+    // Upward edges for the backward search: down[downOffsets[v] ..] are edges u -> v with u ranked above v
+    private int[] downOffsets;
+    private int[] downEdges;
+
+    private int shortcutCount;
+    private long preprocessingNanos;
+
+    // Query state of each thread, the parent of a node is the hierarchy edge it was reached by
+    private ThreadLocal<SearchWorkspace> forwardWorkspaces = new ThreadLocal<>();
+    private ThreadLocal<SearchWorkspace> backwardWorkspaces = new ThreadLocal<>();
+
+    private ContractionHierarchy(RoadNetwork graph) {
+        //Constructor
+        this.graph = graph;
+    }
+
+    // Method to run the preprocessing on a graph
+    public static ContractionHierarchy build(RoadNetwork graph) {
+        ContractionHierarchy hierarchy = new ContractionHierarchy(graph);
+        long started = System.nanoTime();
+        new Builder(graph).contract(hierarchy);
+        hierarchy.preprocessingNanos = System.nanoTime() - started;
+        return hierarchy;
+    }
+
+    public RoadNetwork getGraph() {
+        return graph;
+    }
+
+    public int getShortcutCount() {
+        return shortcutCount;
+    }
+
+    public long getPreprocessingNanos() {
+        return preprocessingNanos;
+    }
+
+    // Number of nodes settled by the calling thread's last query, both directions together
+    public int getLastSettledCount() {
+        return forward().getSettledCount() + backward().getSettledCount();
+    }
+
+    public int getRank(int node) {
+        return rank[node];
+    }
+
+    // Method to get the shortest path cost between two nodes, infinity if there is no path
+    public double distance(int start, int stop) {
+        return query(start, stop);
+    }
+
+    // Method to get the first node after start on a shortest path to stop, or -1 if there is none
+    public int nextHop(int start, int stop) {
+        if (start == stop || Double.isInfinite(query(start, stop))) {
+            return -1;
+        }
+        SearchWorkspace forward = forward();
+        int meetingNode = forward.getMeetingNode();
+        int firstEdge;
+        if (meetingNode == start) {
+            // The whole path was found by the backward search, its first edge leaves the start
+            firstEdge = backward().getParent(start);
+        } else {
+            firstEdge = forward.getParent(meetingNode);
+            while (edgeFrom[firstEdge] != start) {
+                firstEdge = forward.getParent(edgeFrom[firstEdge]);
+            }
+        }
+
+        // Only the front of the first edge needs unpacking
+        int edge = firstEdge;
+        while (edgeMiddle[edge] >= 0) {
+            edge = lookupEdge(edgeFrom[edge], edgeMiddle[edge]);
+        }
+        return edgeTo[edge];
+    }
+
+    // Method to get the nodes after start up to and including stop, empty if they are the same node and null if there is no path
+    public List<Integer> findPath(int start, int stop) {
+        if (Double.isInfinite(query(start, stop))) {
+            return null;
+        }
+        SearchWorkspace forward = forward();
+        SearchWorkspace backward = backward();
+        int meetingNode = forward.getMeetingNode();
+        List<Integer> hierarchyEdges = new ArrayList<>();
+        for (int node = meetingNode; node != start; node = edgeFrom[forward.getParent(node)]) {
+            hierarchyEdges.add(0, forward.getParent(node));
+        }
+        for (int node = meetingNode; node != stop; node = edgeTo[backward.getParent(node)]) {
+            hierarchyEdges.add(backward.getParent(node));
+        }
+
+        List<Integer> path = new ArrayList<>();
+        for (int edge : hierarchyEdges) {
+            unpack(edge, path);
+        }
+        return path;
+    }
+
+    // Append the original nodes covered by a hierarchy edge (excluding its start) to the path
+    private void unpack(int edge, List<Integer> path) {
+        if (edgeMiddle[edge] < 0) {
+            path.add(edgeTo[edge]);
+            return;
+        }
+        unpack(lookupEdge(edgeFrom[edge], edgeMiddle[edge]), path);
+        unpack(lookupEdge(edgeMiddle[edge], edgeTo[edge]), path);
+    }
+
+    private int lookupEdge(int from, int to) {
+        return edgeLookup.get(LongIntHashMap.key(from, to));
+    }
+
+    // Bidirectional upward Dijkstra, leaves the meeting node and both search trees in this thread's workspaces
+    private double query(int start, int stop) {
+        SearchWorkspace forward = forward();
+        SearchWorkspace backward = backward();
+        IndexedMinHeap forwardQueue = forward.getOpenSet();
+        IndexedMinHeap backwardQueue = backward.getOpenSet();
+        forward.reset();
+        backward.reset();
+        double best = Double.POSITIVE_INFINITY;
+        forward.setGScore(start, 0.0);
+        backward.setGScore(stop, 0.0);
+        forwardQueue.insertOrDecrease(start, 0.0);
+        backwardQueue.insertOrDecrease(stop, 0.0);
+
+        while (!forwardQueue.isEmpty() || !backwardQueue.isEmpty()) {
+            // A direction is finished once its smallest key can no longer improve the best meeting
+            boolean forwardDone = forwardQueue.isEmpty() || forwardQueue.getKey(forwardQueue.peek()) >= best;
+            boolean backwardDone = backwardQueue.isEmpty() || backwardQueue.getKey(backwardQueue.peek()) >= best;
+            if (forwardDone && backwardDone) break;
+
+            boolean forwardStep = !forwardDone && (backwardDone
+                    || forwardQueue.getKey(forwardQueue.peek()) <= backwardQueue.getKey(backwardQueue.peek()));
+            SearchWorkspace search = forwardStep ? forward : backward;
+            SearchWorkspace other = forwardStep ? backward : forward;
+            int node = search.getOpenSet().poll();
+            search.close(node);
+            double nodeDistance = search.getGScore(node);
+            if (nodeDistance + other.getGScore(node) < best) {
+                best = nodeDistance + other.getGScore(node);
+                forward.setMeetingNode(node);
+            }
+            if (forwardStep) {
+                for (int i = upOffsets[node]; i < upOffsets[node + 1]; i++) {
+                    int edge = upEdges[i];
+                    relax(forward, edgeTo[edge], nodeDistance + edgeWeight[edge], edge);
+                }
+            } else {
+                for (int i = downOffsets[node]; i < downOffsets[node + 1]; i++) {
+                    int edge = downEdges[i];
+                    relax(backward, edgeFrom[edge], nodeDistance + edgeWeight[edge], edge);
+                }
+            }
+        }
+        return best;
+    }
+
+    private static void relax(SearchWorkspace search, int node, double distance, int edge) {
+        if (distance < search.getGScore(node)) {
+            search.setGScore(node, distance);
+            search.setParent(node, edge);
+            search.getOpenSet().insertOrDecrease(node, distance);
+        }
+    }
+
+    private SearchWorkspace forward() {
+        return SearchWorkspace.forThread(forwardWorkspaces, graph.getNodeCount());
+    }
+
+    private SearchWorkspace backward() {
+        return SearchWorkspace.forThread(backwardWorkspaces, graph.getNodeCount());
+    }
+
+    // This class holds the mutable adjacency used while contracting, it is discarded once the hierarchy is built
+    private static class Builder {
+
+        private RoadNetwork graph;
+        private List<List<Integer>> outArcs = new ArrayList<>(); // Arc ids leaving each node
+        private List<List<Integer>> inArcs = new ArrayList<>();  // Arc ids entering each node
+        private int[] arcFrom = new int[16];
+        private int[] arcTo = new int[16];
+        private double[] arcWeight = new double[16];
+        private int[] arcMiddle = new int[16];
+        private int arcCount;
+
+        private boolean[] contracted;
+        private int[] contractedNeighbors; // How many neighbors of each node are already contracted
+
+        // Witness search state
+        private double[] witnessDistance;
+        private int[] witnessTouched;
+        private int witnessTouchedCount;
+        private IndexedMinHeap witnessQueue;
+
+        private Builder(RoadNetwork graph) {
+            this.graph = graph;
+            int n = graph.getNodeCount();
+            for (int i = 0; i < n; i++) {
+                outArcs.add(new ArrayList<>());
+                inArcs.add(new ArrayList<>());
+            }
+            for (int u = 0; u < n; u++) {
+                for (int edge = graph.firstEdge(u); edge < graph.endEdge(u); edge++) {
+                    addArc(u, graph.getTarget(edge), graph.getWeight(edge), -1);
+                }
+            }
+            contracted = new boolean[n];
+            contractedNeighbors = new int[n];
+            witnessDistance = new double[n];
+            Arrays.fill(witnessDistance, Double.POSITIVE_INFINITY);
+            witnessTouched = new int[n];
+            witnessQueue = new IndexedMinHeap(n);
+        }
+
+        private void addArc(int from, int to, double weight, int middle) {
+            if (arcCount == arcFrom.length) {
+                arcFrom = Arrays.copyOf(arcFrom, arcCount * 2);
+                arcTo = Arrays.copyOf(arcTo, arcCount * 2);
+                arcWeight = Arrays.copyOf(arcWeight, arcCount * 2);
+                arcMiddle = Arrays.copyOf(arcMiddle, arcCount * 2);
+            }
+            arcFrom[arcCount] = from;
+            arcTo[arcCount] = to;
+            arcWeight[arcCount] = weight;
+            arcMiddle[arcCount] = middle;
+            outArcs.get(from).add(arcCount);
+            inArcs.get(to).add(arcCount);
+            arcCount++;
+        }
+
+        // Contract every node and copy the resulting hierarchy into the arrays of the result
+        private void contract(ContractionHierarchy hierarchy) {
+            int n = graph.getNodeCount();
+            int originalArcs = arcCount;
+            int[] rank = new int[n];
+            IndexedMinHeap order = new IndexedMinHeap(n);
+            for (int v = 0; v < n; v++) {
+                order.insertOrDecrease(v, importance(v));
+            }
+
+            int nextRank = 0;
+            while (!order.isEmpty()) {
+                int v = order.poll();
+                // Lazy update: the stored priority may be stale, contract only if it is still the least important
+                double current = importance(v);
+                if (!order.isEmpty() && current > order.getKey(order.peek())) {
+                    order.insertOrDecrease(v, current);
+                    continue;
+                }
+                contractNode(v, true);
+                contracted[v] = true;
+                rank[v] = nextRank++;
+                for (int arc : outArcs.get(v)) {
+                    contractedNeighbors[arcTo[arc]]++;
+                }
+                for (int arc : inArcs.get(v)) {
+                    contractedNeighbors[arcFrom[arc]]++;
+                }
+            }
+
+            hierarchy.rank = rank;
+            hierarchy.shortcutCount = arcCount - originalArcs;
+            hierarchy.edgeFrom = Arrays.copyOf(arcFrom, arcCount);
+            hierarchy.edgeTo = Arrays.copyOf(arcTo, arcCount);
+            hierarchy.edgeWeight = Arrays.copyOf(arcWeight, arcCount);
+            hierarchy.edgeMiddle = Arrays.copyOf(arcMiddle, arcCount);
+            hierarchy.edgeLookup = new LongIntHashMap(arcCount, -1);
+            for (int arc = 0; arc < arcCount; arc++) {
+                long key = LongIntHashMap.key(arcFrom[arc], arcTo[arc]);
+                int existing = hierarchy.edgeLookup.get(key);
+                if (existing < 0 || arcWeight[arc] < arcWeight[existing]) {
+                    hierarchy.edgeLookup.put(key, arc);
+                }
+            }
+
+            // Split the arcs into the upward graphs of the two query directions
+            hierarchy.upOffsets = new int[n + 1];
+            hierarchy.downOffsets = new int[n + 1];
+            for (int arc = 0; arc < arcCount; arc++) {
+                if (rank[arcTo[arc]] > rank[arcFrom[arc]]) {
+                    hierarchy.upOffsets[arcFrom[arc] + 1]++;
+                } else {
+                    hierarchy.downOffsets[arcTo[arc] + 1]++;
+                }
+            }
+            for (int v = 0; v < n; v++) {
+                hierarchy.upOffsets[v + 1] += hierarchy.upOffsets[v];
+                hierarchy.downOffsets[v + 1] += hierarchy.downOffsets[v];
+            }
+            hierarchy.upEdges = new int[hierarchy.upOffsets[n]];
+            hierarchy.downEdges = new int[hierarchy.downOffsets[n]];
+            int[] upFill = Arrays.copyOf(hierarchy.upOffsets, n);
+            int[] downFill = Arrays.copyOf(hierarchy.downOffsets, n);
+            for (int arc = 0; arc < arcCount; arc++) {
+                if (rank[arcTo[arc]] > rank[arcFrom[arc]]) {
+                    hierarchy.upEdges[upFill[arcFrom[arc]]++] = arc;
+                } else {
+                    hierarchy.downEdges[downFill[arcTo[arc]]++] = arc;
+                }
+            }
+        }
+
+        // Priority of a node: shortcuts it would add minus arcs it removes, plus already contracted neighbors to spread the order out
+        private double importance(int v) {
+            int shortcuts = contractNode(v, false);
+            int removed = 0;
+            for (int arc : outArcs.get(v)) {
+                if (!contracted[arcTo[arc]]) removed++;
+            }
+            for (int arc : inArcs.get(v)) {
+                if (!contracted[arcFrom[arc]]) removed++;
+            }
+            return shortcuts - removed + contractedNeighbors[v];
+        }
+
+        // Find (and if addShortcuts is set, add) the shortcuts needed to bypass v, returns how many there are
+        private int contractNode(int v, boolean addShortcuts) {
+            int shortcuts = 0;
+            List<Integer> incoming = inArcs.get(v);
+            List<Integer> outgoing = outArcs.get(v);
+            for (int i = 0; i < incoming.size(); i++) {
+                int inArc = incoming.get(i);
+                int u = arcFrom[inArc];
+                if (contracted[u] || u == v) continue;
+
+                double maxCost = 0;
+                for (int outArc : outgoing) {
+                    if (!contracted[arcTo[outArc]]) {
+                        maxCost = Math.max(maxCost, arcWeight[inArc] + arcWeight[outArc]);
+                    }
+                }
+                witnessSearch(u, v, maxCost);
+
+                for (int j = 0; j < outgoing.size(); j++) {
+                    int outArc = outgoing.get(j);
+                    int w = arcTo[outArc];
+                    if (contracted[w] || w == u || w == v) continue;
+                    double viaCost = arcWeight[inArc] + arcWeight[outArc];
+                    if (witnessDistance[w] > viaCost) {
+                        shortcuts++;
+                        if (addShortcuts) {
+                            addArc(u, w, viaCost, v);
+                            touchWitness(w);
+                            witnessDistance[w] = viaCost; // Later parallel arcs into v must beat this shortcut
+                        }
+                    }
+                }
+                clearWitnessSearch();
+            }
+            return shortcuts;
+        }
+
+        // Dijkstra from source over uncontracted nodes that avoids the node being contracted
+        private void witnessSearch(int source, int avoid, double maxCost) {
+            touchWitness(source);
+            witnessDistance[source] = 0.0;
+            witnessQueue.insertOrDecrease(source, 0.0);
+            int settled = 0;
+            while (!witnessQueue.isEmpty() && settled < WITNESS_SETTLE_LIMIT) {
+                int node = witnessQueue.poll();
+                settled++;
+                if (witnessDistance[node] > maxCost) break;
+                for (int arc : outArcs.get(node)) {
+                    int next = arcTo[arc];
+                    if (contracted[next] || next == avoid) continue;
+                    double distance = witnessDistance[node] + arcWeight[arc];
+                    if (distance < witnessDistance[next]) {
+                        touchWitness(next);
+                        witnessDistance[next] = distance;
+                        witnessQueue.insertOrDecrease(next, distance);
+                    }
+                }
+            }
+            witnessQueue.clear();
+        }
+
+        private void touchWitness(int node) {
+            if (witnessDistance[node] == Double.POSITIVE_INFINITY) {
+                witnessTouched[witnessTouchedCount++] = node;
+            }
+        }
+
+        private void clearWitnessSearch() {
+            for (int i = 0; i < witnessTouchedCount; i++) {
+                witnessDistance[witnessTouched[i]] = Double.POSITIVE_INFINITY;
+            }
+            witnessTouchedCount = 0;
+        }
+    }
+}
@@ -0,0 +1,588 @@
+// This class benchmarks the dispatching code on a synthetic grid road network and a large random fleet.
+// Run with: java DispatchBenchmark [gridSize] [vehicles] [requests]
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+public class DispatchBenchmark {
+
+    // Method to place vehicles on random nodes, with random seat capacities and some seats already taken
+    public static List<Vehicle> randomFleet(Graph graph, int count, long seed) {
+        Random random = new Random(seed);
+        List<Node> nodes = graph.getNodes();
+        List<Vehicle> fleet = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Vehicle vehicle = new Vehicle("Vehicle" + i, nodes.get(random.nextInt(nodes.size())), 1 + random.nextInt(6));
+            int taken = random.nextInt(vehicle.getSeatCapacity() + 1);
+            for (int seat = 0; seat < taken; seat++) {
+                vehicle.addRideRequest(new RideRequest("Seat" + i + "_" + seat, vehicle.getCurrentNode(), vehicle.getCurrentNode(), 0));
+            }
+            fleet.add(vehicle);
+        }
+        return fleet;
+    }
+
+    // Method to create ride requests between random nodes
+    public static List<RideRequest> randomRequests(Graph graph, int count, long seed) {
+        Random random = new Random(seed);
+        List<Node> nodes = graph.getNodes();
+        List<RideRequest> requests = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            requests.add(new RideRequest("RideRequest" + i, nodes.get(random.nextInt(nodes.size())),
+                    nodes.get(random.nextInt(nodes.size())), 1));
+        }
+        return requests;
+    }
+
+    // The allocation scan the simulations used before the grid: first strictly closer vehicle in fleet order
+    private static Vehicle scanNearest(List<Vehicle> fleet, Node target, Predicate<Vehicle> filter) {
+        Vehicle nearest = null;
+        double minDistance = Double.MAX_VALUE;
+        for (Vehicle vehicle : fleet) {
+            if (!filter.test(vehicle)) continue;
+            double distance = GeoDistance.haversine(vehicle.getCurrentNode(), target);
+            if (distance < minDistance) {
+                minDistance = distance;
+                nearest = vehicle;
+            }
+        }
+        return nearest;
+    }
+
+    // The same scan split over the ForkJoin pool, ties still go to the first vehicle in fleet order
+    private static Vehicle parallelScanNearest(List<Vehicle> fleet, Node target, Predicate<Vehicle> filter) {
+        int best = ParallelScan.argMin(fleet.size(), 0, i -> filter.test(fleet.get(i))
+                ? GeoDistance.haversine(fleet.get(i).getCurrentNode(), target) : Double.POSITIVE_INFINITY);
+        return best < 0 ? null : fleet.get(best);
+    }
+
+    // Method to compare nearest-vehicle queries on the grid index against the full fleet scan, before and after the fleet moves
+    private static void timeVehicleIndex(Graph graph, List<Vehicle> fleet, List<RideRequest> requests) {
+        Predicate<Vehicle> hasSeat = vehicle -> vehicle.getRideRequests().size() + vehicle.getPickedUpRequests().size() < vehicle.getSeatCapacity();
+        VehicleIndex index = new VehicleIndex(fleet);
+        Random random = new Random(3);
+        List<Node> nodes = graph.getNodes();
+        for (int round = 0; round < 3; round++) {
+            Vehicle[] found = new Vehicle[requests.size()];
+            long visited = 0;
+            long started = System.nanoTime();
+            for (int i = 0; i < requests.size(); i++) {
+                found[i] = index.nearest(requests.get(i).getPickUpPoint(), hasSeat);
+                visited += index.getLastVisitedCount();
+            }
+            long indexNanos = System.nanoTime() - started;
+            int mismatches = 0;
+            started = System.nanoTime();
+            for (int i = 0; i < requests.size(); i++) {
+                if (scanNearest(fleet, requests.get(i).getPickUpPoint(), hasSeat) != found[i]) {
+                    mismatches++;
+                }
+            }
+            long scanNanos = System.nanoTime() - started;
+            started = System.nanoTime();
+            for (int i = 0; i < requests.size(); i++) {
+                if (parallelScanNearest(fleet, requests.get(i).getPickUpPoint(), hasSeat) != found[i]) {
+                    mismatches++;
+                }
+            }
+            long parallelNanos = System.nanoTime() - started;
+            System.out.printf("Round %d: grid %8.2f us/request (%.1f vehicles checked), scan %8.2f us/request, parallel scan %8.2f us/request, %d mismatches%n",
+                    round, indexNanos / 1e3 / requests.size(), (double) visited / requests.size(), scanNanos / 1e3 / requests.size(),
+                    parallelNanos / 1e3 / requests.size(), mismatches);
+
+            // Move a quarter of the fleet to new nodes between rounds
+            for (int i = 0; i < fleet.size() / 4; i++) {
+                Vehicle vehicle = fleet.get(random.nextInt(fleet.size()));
+                vehicle.setCurrentNode(nodes.get(random.nextInt(nodes.size())));
+                index.update(vehicle);
+            }
+        }
+    }
+
+    // Method to compare the empty-first policy of SimulationEmpty done with fleet scans and with a FleetAvailability,
+    // each on its own copy of the fleet, assigning every request in turn
+    private static void timeAvailability(Graph graph, int vehicleCount, List<RideRequest> requests) {
+        List<Vehicle> scanned = randomFleet(graph, vehicleCount, 11);
+        List<Vehicle> tracked = randomFleet(graph, vehicleCount, 11);
+        VehicleIndex index = new VehicleIndex(scanned);
+        FleetAvailability availability = new FleetAvailability(tracked);
+        Vehicle[] scanChoices = new Vehicle[requests.size()];
+        Vehicle[] trackedChoices = new Vehicle[requests.size()];
+
+        long started = System.nanoTime();
+        for (int i = 0; i < requests.size(); i++) {
+            Vehicle chosen = null;
+            for (Vehicle vehicle : scanned) {
+                if (vehicle.isEmpty()) {
+                    chosen = vehicle;
+                    break;
+                }
+            }
+            if (chosen == null) {
+                chosen = index.nearest(requests.get(i).getPickUpPoint(), vehicle -> FleetAvailability.freeSeats(vehicle) > 0);
+            }
+            if (chosen != null && chosen.addRideRequest(requests.get(i))) {
+                scanChoices[i] = chosen;
+            }
+        }
+        long scanNanos = System.nanoTime() - started;
+
+        started = System.nanoTime();
+        for (int i = 0; i < requests.size(); i++) {
+            Vehicle chosen = availability.firstIdle();
+            if (chosen == null) {
+                chosen = availability.nearestWithFreeSeat(requests.get(i).getPickUpPoint());
+            }
+            if (chosen != null && chosen.addRideRequest(requests.get(i))) {
+                availability.update(chosen);
+                trackedChoices[i] = chosen;
+            }
+        }
+        long trackedNanos = System.nanoTime() - started;
+
+        int mismatches = 0;
+        for (int i = 0; i < requests.size(); i++) {
+            String scanId = scanChoices[i] == null ? null : scanChoices[i].getVehicleID();
+            String trackedId = trackedChoices[i] == null ? null : trackedChoices[i].getVehicleID();
+            if (scanId == null ? trackedId != null : !scanId.equals(trackedId)) {
+                mismatches++;
+            }
+        }
+        System.out.printf("Availability: empty-first over %d requests, fleet scan %.1f us, availability sets %.1f us per request, %d mismatches%n",
+                requests.size(), scanNanos / 1e3 / requests.size(), trackedNanos / 1e3 / requests.size(), mismatches);
+    }
+
+    // Method to compare assigning a tick's requests together with assigning them greedily in queue order.
+    // Neither touches the fleet, taken seats are counted on the side.
+    private static void timeBatchAssignment(List<Vehicle> fleet, List<RideRequest> requests) {
+        VehicleIndex index = new VehicleIndex(fleet);
+        Map<Vehicle, Integer> positions = new IdentityHashMap<>();
+        for (int i = 0; i < fleet.size(); i++) {
+            positions.put(fleet.get(i), i);
+        }
+        ToIntFunction<Vehicle> freeSeats = vehicle -> vehicle.getSeatCapacity() - vehicle.getRideRequests().size() - vehicle.getPickedUpRequests().size();
+        BatchAssigner assigner = new BatchAssigner(index, BatchAssigner.DEFAULT_CANDIDATES, Long.MAX_VALUE);
+        BatchAssigner sequential = new BatchAssigner(index, BatchAssigner.DEFAULT_CANDIDATES, Long.MAX_VALUE);
+        sequential.setParallelThreshold(Integer.MAX_VALUE);
+        for (int round = 0; round < 3; round++) {
+            long started = System.nanoTime();
+            int[] taken = new int[fleet.size()];
+            int greedyAssigned = 0;
+            double greedyCost = 0;
+            for (RideRequest request : requests) {
+                Vehicle vehicle = index.nearest(request.getPickUpPoint(), v -> freeSeats.applyAsInt(v) > taken[positions.get(v)]);
+                if (vehicle != null) {
+                    taken[positions.get(vehicle)]++;
+                    greedyAssigned++;
+                    greedyCost += GeoDistance.haversine(vehicle.getCurrentNode(), request.getPickUpPoint());
+                }
+            }
+            double greedyMillis = (System.nanoTime() - started) / 1e6;
+            started = System.nanoTime();
+            Vehicle[] assigned = assigner.assign(requests, freeSeats);
+            double batchMillis = (System.nanoTime() - started) / 1e6;
+            started = System.nanoTime();
+            Vehicle[] expected = sequential.assign(requests, freeSeats);
+            double sequentialMillis = (System.nanoTime() - started) / 1e6;
+            int mismatches = 0;
+            for (int i = 0; i < requests.size(); i++) {
+                if (assigned[i] != expected[i]) mismatches++;
+            }
+            System.out.printf("Assignment round %d: greedy %d requests, %.1f km in %.1f ms; batch %d requests, %.1f km in %.1f ms (%.1f ms on one thread, %d mismatches)%n",
+                    round, greedyAssigned, greedyCost, greedyMillis, assigner.getLastAssignedCount(), assigner.getLastTotalCost(), batchMillis,
+                    sequentialMillis, mismatches);
+        }
+    }
+
+    // Method to compare the network distance a vehicle drives to serve its requests when it always heads to the
+    // straight-line nearest stop (as the proximity simulation does) with following a cheapest-insertion stop plan and
+    // with the exact order of a StopSequencer
+    private static void timeStopPlans(Graph graph, RoutingEngine routing, int vehicleCount, int requestsPerVehicle) {
+        List<Node> nodes = graph.getNodes();
+        Random random = new Random(23);
+        double greedyTotal = 0;
+        double plannedTotal = 0;
+        long planNanos = 0;
+        StopSequencer sequencer = new StopSequencer();
+        double exactTotal = 0;
+        long exactNanos = 0;
+        long replanNanos = 0;
+        int replans = 0;
+        long replanStates = 0;
+        for (int v = 0; v < vehicleCount; v++) {
+            Node start = nodes.get(random.nextInt(nodes.size()));
+            List<RideRequest> requests = new ArrayList<>();
+            for (int i = 0; i < requestsPerVehicle; i++) {
+                requests.add(new RideRequest("RideRequest" + i, nodes.get(random.nextInt(nodes.size())), nodes.get(random.nextInt(nodes.size())), 1));
+            }
+
+            // Nearest stop first, drop-offs winning only when strictly closer
+            List<RideRequest> waiting = new ArrayList<>(requests);
+            List<RideRequest> onBoard = new ArrayList<>();
+            Node position = start;
+            while (!waiting.isEmpty() || !onBoard.isEmpty()) {
+                RideRequest pickUp = null;
+                RideRequest dropOff = null;
+                for (RideRequest request : waiting) {
+                    if (pickUp == null || GeoDistance.haversine(position, request.getPickUpPoint()) < GeoDistance.haversine(position, pickUp.getPickUpPoint())) {
+                        pickUp = request;
+                    }
+                }
+                for (RideRequest request : onBoard) {
+                    if (dropOff == null || GeoDistance.haversine(position, request.getDropOffPoint()) < GeoDistance.haversine(position, dropOff.getDropOffPoint())) {
+                        dropOff = request;
+                    }
+                }
+                Node stop;
+                if (dropOff != null && (pickUp == null || GeoDistance.haversine(position, dropOff.getDropOffPoint()) < GeoDistance.haversine(position, pickUp.getPickUpPoint()))) {
+                    stop = dropOff.getDropOffPoint();
+                    onBoard.remove(dropOff);
+                } else {
+                    stop = pickUp.getPickUpPoint();
+                    waiting.remove(pickUp);
+                    onBoard.add(pickUp);
+                }
+                greedyTotal += routing.distance(position, stop);
+                position = stop;
+            }
+
+            long started = System.nanoTime();
+            StopPlan plan = new StopPlan(start, 0, requestsPerVehicle);
+            for (RideRequest request : requests) {
+                plan.insert(request, start, routing);
+            }
+            planNanos += System.nanoTime() - started;
+            plannedTotal += plan.getTotalCost();
+
+            // Exact order, then solved again from every stop as a vehicle replanning after each event would
+            started = System.nanoTime();
+            StopSequencer.Sequence sequence = sequencer.solve(start, requests, new ArrayList<>(), routing);
+            exactNanos += System.nanoTime() - started;
+            exactTotal += sequence.getCost();
+            List<RideRequest> waitingForExact = new ArrayList<>(requests);
+            List<RideRequest> onBoardForExact = new ArrayList<>();
+            for (int k = 0; k < sequence.size() - 1; k++) {
+                if (sequence.isPickUp(k)) {
+                    waitingForExact.remove(sequence.getRequest(k));
+                    onBoardForExact.add(sequence.getRequest(k));
+                } else {
+                    onBoardForExact.remove(sequence.getRequest(k));
+                }
+                started = System.nanoTime();
+                sequencer.solve(sequence.getNode(k), waitingForExact, onBoardForExact, routing);
+                replanNanos += System.nanoTime() - started;
+                replans++;
+                replanStates += sequencer.getLastSolvedStates();
+            }
+        }
+        System.out.printf("Stop plans: %d vehicles with %d requests each, nearest stop first %.1f, cheapest insertion %.1f (%.0f us per insertion), "
+                + "exact %.1f (%.0f us per vehicle, %.0f us per replan with %d states solved again)%n",
+                vehicleCount, requestsPerVehicle, greedyTotal, plannedTotal, planNanos / 1e3 / (vehicleCount * requestsPerVehicle),
+                exactTotal, exactNanos / 1e3 / vehicleCount, replanNanos / 1e3 / Math.max(1, replans), replanStates);
+    }
+
+    // Method to compare pooling a batch of requests into shared trips with giving every request its own vehicle,
+    // and check that splitting the work over threads does not change the trips chosen
+    private static void timeShareability(Graph graph, RoutingEngine routing, int vehicleCount, int requestCount) {
+        List<Node> nodes = graph.getNodes();
+        Random random = new Random(29);
+        List<Vehicle> fleet = new ArrayList<>();
+        for (int i = 0; i < vehicleCount; i++) {
+            fleet.add(new Vehicle("Vehicle" + i, nodes.get(random.nextInt(nodes.size())), 4));
+        }
+        List<RideRequest> requests = randomRequests(graph, requestCount, 31);
+        routing.setDistanceCacheSize(1 << 20); // Trips share most of their legs
+        VehicleIndex index = new VehicleIndex(fleet);
+
+        // Waits of up to 3 km of driving and rides at most 50% longer than alone
+        ShareabilityDispatcher dispatcher = new ShareabilityDispatcher(index, routing, 3.0, 0.5);
+        dispatcher.setTimeBudgetNanos(Long.MAX_VALUE / 2); // Let every batch finish, so runs can be compared
+        dispatcher.setMaxTripSize(1);
+        List<ShareabilityDispatcher.Trip> alone = dispatcher.dispatch(requests);
+        dispatcher.setMaxTripSize(ShareabilityDispatcher.DEFAULT_MAX_TRIP_SIZE);
+        long started = System.nanoTime();
+        List<ShareabilityDispatcher.Trip> shared = dispatcher.dispatch(requests);
+        long sharedNanos = System.nanoTime() - started;
+        int pairs = dispatcher.getLastShareablePairs();
+        int tripCount = dispatcher.getLastTripCount();
+        boolean timedOut = dispatcher.lastTimedOut();
+
+        int servedAlone = 0;
+        double costAlone = 0;
+        for (ShareabilityDispatcher.Trip trip : alone) {
+            servedAlone += trip.getRequests().size();
+            costAlone += trip.getAddedCost();
+        }
+        int servedShared = 0;
+        int pooled = 0;
+        double costShared = 0;
+        for (ShareabilityDispatcher.Trip trip : shared) {
+            servedShared += trip.getRequests().size();
+            pooled += trip.getRequests().size() > 1 ? trip.getRequests().size() : 0;
+            costShared += trip.getAddedCost();
+        }
+        System.out.printf("Shareability: %d vehicles, %d requests, %d shareable pairs, %d candidate trips%s%n",
+                vehicleCount, requestCount, pairs, tripCount, timedOut ? " (time budget ran out)" : "");
+        System.out.printf("  one request per vehicle: %d served by %d vehicles, %.1f km%n", servedAlone, alone.size(), costAlone);
+        System.out.printf("  shared trips:            %d served by %d vehicles (%d pooled), %.1f km in %.1f ms%n",
+                servedShared, shared.size(), pooled, costShared, sharedNanos / 1e6);
+
+        // Everything on the calling thread must choose the same trips
+        dispatcher.setParallelThreshold(Integer.MAX_VALUE);
+        List<ShareabilityDispatcher.Trip> sequential = dispatcher.dispatch(requests);
+        int mismatches = Math.abs(sequential.size() - shared.size());
+        for (int t = 0; t < Math.min(sequential.size(), shared.size()); t++) {
+            if (sequential.get(t).getVehicle() != shared.get(t).getVehicle() || !sequential.get(t).getRequests().equals(shared.get(t).getRequests())) {
+                mismatches++;
+            }
+        }
+        System.out.println("  " + mismatches + " mismatches between parallel and sequential trips");
+        routing.setDistanceCacheSize(0);
+    }
+
+    // Method to compare taking each tick's arrivals out of a day of requests filed by time interval with scanning a queue
+    // of them the way the simulations used to
+    private static void timeRequestCalendar(Graph graph, int count, int ticks) {
+        List<RideRequest> day = randomRequests(graph, count, 37);
+        Random random = new Random(41);
+        for (RideRequest request : day) {
+            request.setTimeInterval(1 + random.nextInt(ticks));
+        }
+
+        long started = System.nanoTime();
+        RequestCalendar calendar = new RequestCalendar(day);
+        long loadNanos = System.nanoTime() - started;
+        long released = 0;
+        started = System.nanoTime();
+        for (int tick = 1; tick <= ticks; tick++) {
+            List<RideRequest> arrivals = calendar.release(tick);
+            released += arrivals.size();
+            if (!arrivals.isEmpty() && tick < ticks) {
+                calendar.defer(arrivals.get(0), tick + 1); // One request a tick finds no vehicle
+            }
+        }
+        long calendarNanos = System.nanoTime() - started;
+
+        // The queue scan only runs for the first ticks, each one costs about the same
+        int scannedTicks = Math.min(ticks, 200);
+        Queue<RideRequest> queue = new LinkedList<>(day);
+        long scanned = 0;
+        started = System.nanoTime();
+        for (int tick = 1; tick <= scannedTicks; tick++) {
+            List<RideRequest> arrivals = new ArrayList<>();
+            for (RideRequest request : queue) {
+                if (request.getTimeInterval() == tick) {
+                    arrivals.add(request);
+                }
+            }
+            queue.removeAll(arrivals);
+            scanned += arrivals.size();
+        }
+        long scanNanos = System.nanoTime() - started;
+        System.out.printf("Request calendar: %d requests over %d ticks, loaded in %.1f ms, %d released in %.1f ms (%.2f us per tick); "
+                + "queue scan %.1f us per tick over the first %d ticks (%d released)%n",
+                count, ticks, loadNanos / 1e6, released, calendarNanos / 1e6, calendarNanos / 1e3 / ticks,
+                scanNanos / 1e3 / scannedTicks, scannedTicks, scanned);
+    }
+
+    // Method to compare a day of sparse demand run one time interval at a time with the same day run skipping the
+    // intervals in which nothing happens, each on its own copy of the fleet and requests. The simulations' printing is
+    // switched off while they run.
+    private static void timeEventCore(Graph graph, int vehicleCount, int requestCount, int ticks) {
+        double[] millis = new double[2];
+        String[] outcomes = new String[2];
+        for (int run = 0; run < 4; run++) { // Both ways twice, the second round is timed with a warmed-up JIT
+            long started = System.nanoTime();
+            SimulationEngine engine = runDay(graph, vehicleCount, requestCount, ticks, run % 2 == 1, 0, ParallelScan.DEFAULT_THRESHOLD);
+            millis[run % 2] = (System.nanoTime() - started) / 1e6;
+            StringBuilder outcome = new StringBuilder();
+            for (Vehicle vehicle : engine.getVehicles()) {
+                outcome.append(vehicle.getCurrentNode().getId()).append(' ').append(vehicle.getTotalActiveTime()).append(' ')
+                        .append(vehicle.getTotalOccupancy()).append(' ').append(vehicle.isEmpty()).append('\n');
+            }
+            outcomes[run % 2] = outcome.toString();
+        }
+        System.out.printf("Event core: %d vehicles, %d requests over %d ticks, every tick %.1f ms, skipping idle ticks %.1f ms, outcomes %s%n",
+                vehicleCount, requestCount, ticks, millis[0], millis[1], outcomes[0].equals(outcomes[1]) ? "identical" : "DIFFERENT");
+    }
+
+    // Method to compare moving vehicles one node per tick with moving them along edges at a speed, where a tick only
+    // handles the vehicles that reach a node in it. Ticks are seconds and vehicles cover 10 m a second.
+    private static void timeMotion(Graph graph, int vehicleCount, int requestCount, int ticks) {
+        double[] millis = new double[2];
+        long[] events = new long[2];
+        for (int run = 0; run < 4; run++) { // Both ways twice, the second round is timed with a warmed-up JIT
+            long started = System.nanoTime();
+            SimulationEngine engine = runDay(graph, vehicleCount, requestCount, ticks, false, run % 2 == 1 ? 0.01 : 0,
+                    ParallelScan.DEFAULT_THRESHOLD);
+            millis[run % 2] = (System.nanoTime() - started) / 1e6;
+            events[run % 2] = engine.getVehicleEventCount();
+        }
+        System.out.printf("Motion: %d vehicles, %d requests over %d ticks, one node per tick %.1f ms (%.1f vehicles handled per tick), "
+                + "along edges %.1f ms (%.1f vehicles handled per tick)%n", vehicleCount, requestCount, ticks,
+                millis[0], (double) events[0] / ticks, millis[1], (double) events[1] / ticks);
+    }
+
+    // Method to compare moving a large fleet with its routes planned one vehicle at a time and planned on all workers
+    // before the moves are applied in fleet order, and check both runs end in exactly the same state
+    private static void timeParallelMoves(Graph graph, int vehicleCount, int requestCount, int ticks) {
+        double[] millis = new double[2];
+        String[] outcomes = new String[2];
+        for (int run = 0; run < 4; run++) { // Both ways twice, the second round is timed with a warmed-up JIT
+            long started = System.nanoTime();
+            SimulationEngine engine = runDay(graph, vehicleCount, requestCount, ticks, false, 0,
+                    run % 2 == 1 ? ParallelScan.DEFAULT_THRESHOLD : Integer.MAX_VALUE);
+            millis[run % 2] = (System.nanoTime() - started) / 1e6;
+            StringBuilder outcome = new StringBuilder();
+            for (Vehicle vehicle : engine.getVehicles()) {
+                outcome.append(vehicle.getCurrentNode().getId()).append(' ').append(vehicle.getTotalActiveTime()).append(' ')
+                        .append(vehicle.getTotalOccupancy()).append(' ').append(vehicle.getPickedUpRequests().size()).append('\n');
+            }
+            outcomes[run % 2] = outcome.append(engine.getRoutingEngine().getRoutePlanCount()).toString();
+        }
+        System.out.printf("Parallel moves: %d vehicles, %d requests over %d ticks, one thread %.1f ms, %d workers %.1f ms, outcomes %s%n",
+                vehicleCount, requestCount, ticks, millis[0], ForkJoinPool.getCommonPoolParallelism(), millis[1],
+                outcomes[0].equals(outcomes[1]) ? "identical" : "DIFFERENT");
+    }
+
+    // Method to run random requests spread over the given ticks on a fresh random fleet, with the simulations' printing
+    // switched off, returns the engine once the run is over
+    private static SimulationEngine runDay(Graph graph, int vehicleCount, int requestCount, int ticks, boolean skipIdleTicks, double speed,
+            int parallelThreshold) {
+        Random random = new Random(43);
+        List<Node> nodes = graph.getNodes();
+        List<Vehicle> fleet = new ArrayList<>();
+        for (int i = 0; i < vehicleCount; i++) {
+            fleet.add(new Vehicle("Vehicle" + i, nodes.get(random.nextInt(nodes.size())), 1 + random.nextInt(4)));
+        }
+        Queue<RideRequest> requests = new LinkedList<>();
+        for (RideRequest request : randomRequests(graph, requestCount, 47)) {
+            request.setTimeInterval(1 + random.nextInt(ticks));
+            requests.add(request);
+        }
+        SimulationEngine engine = new SimulationEngine(graph, fleet, requests, ticks);
+        engine.setSkipIdleTicks(skipIdleTicks);
+        engine.setSpeed(speed);
+        engine.setParallelThreshold(parallelThreshold);
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            engine.run(new NearestFreeSeatDispatch(null, null), new NearestStopSelection(null));
+        } finally {
+            System.setOut(out);
+        }
+        return engine;
+    }
+
+    // Method to time snapping random coordinates to nodes and roads, one at a time and in batches, and check them against a full scan
+    private static void timeSnapping(Graph graph, int count) {
+        CompactGraph network = CompactGraph.fromGraph(graph);
+        long started = System.nanoTime();
+        SnapIndex index = SnapIndex.build(network);
+        double buildMillis = (System.nanoTime() - started) / 1e6;
+
+        // Random points over the network's bounding box, with a margin so some fall outside it
+        double minLatitude = Double.POSITIVE_INFINITY, maxLatitude = Double.NEGATIVE_INFINITY;
+        double minLongitude = Double.POSITIVE_INFINITY, maxLongitude = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < network.getNodeCount(); i++) {
+            minLatitude = Math.min(minLatitude, network.getLatitude(i));
+            maxLatitude = Math.max(maxLatitude, network.getLatitude(i));
+            minLongitude = Math.min(minLongitude, network.getLongitude(i));
+            maxLongitude = Math.max(maxLongitude, network.getLongitude(i));
+        }
+        Random random = new Random(17);
+        double[] latitudes = new double[count];
+        double[] longitudes = new double[count];
+        for (int i = 0; i < count; i++) {
+            latitudes[i] = minLatitude - 0.01 + random.nextDouble() * (maxLatitude - minLatitude + 0.02);
+            longitudes[i] = minLongitude - 0.01 + random.nextDouble() * (maxLongitude - minLongitude + 0.02);
+        }
+
+        for (int round = 0; round < 3; round++) {
+            int[] nodes = new int[count];
+            SnapIndex.Snap[] single = new SnapIndex.Snap[count];
+            started = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                nodes[i] = index.nearestNode(latitudes[i], longitudes[i]);
+            }
+            double nodeNanos = (double) (System.nanoTime() - started) / count;
+            started = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                single[i] = index.snap(latitudes[i], longitudes[i]);
+            }
+            double snapNanos = (double) (System.nanoTime() - started) / count;
+            started = System.nanoTime();
+            SnapIndex.Snap[] snaps = index.snapAll(latitudes, longitudes);
+            double batchNanos = (double) (System.nanoTime() - started) / count;
+            System.out.printf("Snapping round %d: %.1f ms to build, nearest node %.0f ns, nearest road %.0f ns, batch %.0f ns per point%n",
+                    round, buildMillis, nodeNanos, snapNanos, batchNanos);
+        }
+
+        // Compare with a scan over every node and road in the same projection
+        double cos = index.getCosReference();
+        int[] nodes = index.nearestNodes(latitudes, longitudes);
+        SnapIndex.Snap[] snaps = index.snapAll(latitudes, longitudes);
+        int mismatches = 0;
+        for (int i = 0; i < Math.min(count, 2000); i++) {
+            double x = longitudes[i] * cos;
+            double y = latitudes[i];
+            double bestNode = Double.POSITIVE_INFINITY;
+            double bestRoad = Double.POSITIVE_INFINITY;
+            for (int u = 0; u < network.getNodeCount(); u++) {
+                double ux = network.getLongitude(u) * cos - x;
+                double uy = network.getLatitude(u) - y;
+                bestNode = Math.min(bestNode, ux * ux + uy * uy);
+                for (int edge = network.firstEdge(u); edge < network.endEdge(u); edge++) {
+                    int v = network.getTarget(edge);
+                    double sx = (network.getLongitude(v) - network.getLongitude(u)) * cos;
+                    double sy = network.getLatitude(v) - network.getLatitude(u);
+                    double t = Math.max(0.0, Math.min(1.0, (-ux * sx - uy * sy) / (sx * sx + sy * sy)));
+                    double dx = ux + t * sx;
+                    double dy = uy + t * sy;
+                    bestRoad = Math.min(bestRoad, dx * dx + dy * dy);
+                }
+            }
+            double nx = network.getLongitude(nodes[i]) * cos - x;
+            double ny = network.getLatitude(nodes[i]) - y;
+            double sx = snaps[i].getLongitude() * cos - x;
+            double sy = snaps[i].getLatitude() - y;
+            if (Math.abs(nx * nx + ny * ny - bestNode) > 1e-15 || Math.abs(sx * sx + sy * sy - bestRoad) > 1e-12) {
+                mismatches++;
+            }
+        }
+        System.out.println("Snapping: " + mismatches + " mismatches against a full scan of " + Math.min(count, 2000) + " points");
+    }
+
+    public static void main(String[] args) {
+        int gridSize = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int vehicleCount = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+        int requestCount = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+
+        Graph graph = RoutingBenchmark.buildGridGraph(gridSize, 42);
+        List<Vehicle> fleet = randomFleet(graph, vehicleCount, 11);
+        List<RideRequest> requests = randomRequests(graph, requestCount, 13);
+        System.out.println("Grid " + gridSize + "x" + gridSize + ", " + vehicleCount + " vehicles, " + requestCount + " requests");
+
+        timeVehicleIndex(graph, fleet, requests);
+        timeBatchAssignment(fleet, requests);
+        timeAvailability(graph, vehicleCount, requests);
+        RoutingEngine routing = new RoutingEngine(graph, RoutingEngine.SearchMode.CONTRACTION_HIERARCHY);
+        timeStopPlans(graph, routing, 200, 4);
+        timeShareability(graph, routing, 500, 1000);
+        timeSnapping(graph, 100000);
+        timeRequestCalendar(graph, 200000, 86400);
+        timeEventCore(graph, 50, 50, 86400);
+        timeMotion(graph, 2000, 2000, 3600);
+        timeParallelMoves(graph, 20000, 20000, 60);
+    }
+}
@@ -0,0 +1,11 @@
+// This interface is how a simulation gives the requests that enter at a time interval to vehicles. An implementation
+// assigns each request with SimulationEngine.assign or puts it back with SimulationEngine.defer, and prints what it
+// did. A run uses one implementation throughout, see SimulationEngine.
+
+import java.util.Queue;
+
+public interface DispatchPolicy {
+
+    // Method to assign or defer every request in newRequests, in queue order unless the policy says otherwise
+    void allocate(SimulationEngine engine, Queue<RideRequest> newRequests);
+}
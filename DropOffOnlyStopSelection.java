@@ -0,0 +1,26 @@
+// This class heads each vehicle straight for the drop-off point of its first request, without stopping at the pick-up
+// point, and keeps it there once it arrives, as the requests are never completed. This is the stop selection of
+// SimulationRun.
+
+public class DropOffOnlyStopSelection implements StopSelectionPolicy {
+
+    // The drop-off point of the first request assigned to the vehicle
+    @Override
+    public Node destination(SimulationEngine engine, Vehicle vehicle, int v) {
+        return vehicle.getRideRequests().get(0).getDropOffPoint();
+    }
+
+    @Override
+    public void move(SimulationEngine engine, Vehicle vehicle, int v) {
+        Node destination = destination(engine, vehicle, v);
+        // Only move when the planned A* route has a next node
+        if (engine.getRoutingEngine().nextMove(vehicle, destination) != null) {
+            engine.moveTowards(vehicle, destination);
+        } else {
+            if (vehicle.getCurrentNode().equals(destination)) {
+                System.out.println("Error: No path found, returning null.");
+            }
+            System.out.println("No valid move for Vehicle at " + vehicle.getCurrentNode().getId());
+        }
+    }
+}
@@ -0,0 +1,29 @@
+// This class assigns each request to the first idle vehicle of the fleet, or to the vehicle with a free seat closest to
+// its pick-up point when none is idle. This is the dispatch of SimulationEmpty.
+
+import java.util.Queue;
+
+public class EmptyFirstDispatch implements DispatchPolicy {
+
+    @Override
+    public void allocate(SimulationEngine engine, Queue<RideRequest> newRequests) {
+        FleetAvailability availability = engine.getAvailability();
+        while (!newRequests.isEmpty()) {
+            RideRequest request = newRequests.poll(); // Get the next ride request
+            // First, try to assign to an empty vehicle (no ride requests and no passengers), the first one in the fleet
+            Vehicle assignedVehicle = availability.firstIdle();
+
+            // If no empty vehicle is found, assign to the closest vehicle with a free seat
+            if (assignedVehicle == null) {
+                assignedVehicle = availability.nearestWithFreeSeat(request.getPickUpPoint());
+            }
+
+            if (engine.assign(assignedVehicle, request)) {
+                System.out.println("Assigned " + request.getRideRequestID() + " to " + assignedVehicle.getVehicleID());
+                System.out.println(assignedVehicle.getVehicleID() + " size is " + assignedVehicle.getRideRequests().size());
+            } else {
+                engine.defer(request); // No vehicle could take the request, requeue it for the next time interval
+            }
+        }
+    }
+}
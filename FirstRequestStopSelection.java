@@ -0,0 +1,34 @@
+// This class moves each vehicle through its requests one at a time, in the order they were assigned: to the first
+// request's pick-up point, then to its drop-off point. This is the stop selection of Simulation (heuristic 1), whose
+// vehicles only ever hold one request.
+
+public class FirstRequestStopSelection implements StopSelectionPolicy {
+
+    // The first request's pick-up point until the passenger is on board, then its drop-off point
+    @Override
+    public Node destination(SimulationEngine engine, Vehicle vehicle, int v) {
+        RideRequest currentRide = vehicle.getRideRequests().get(0); // Get the first ride request
+        return vehicle.hasPassenger() ? currentRide.getDropOffPoint() : currentRide.getPickUpPoint();
+    }
+
+    @Override
+    public void move(SimulationEngine engine, Vehicle vehicle, int v) {
+        Node destination = destination(engine, vehicle, v);
+        System.out.println(vehicle.getVehicleID() + " is heading to " + (vehicle.hasPassenger() ? "drop-off" : "pickup") + " point " + destination.getId());
+
+        // Check if the vehicle has reached its destination
+        if (engine.moveTowards(vehicle, destination)) {
+            if (!vehicle.hasPassenger()) {
+                // If it has reached the pickup point, set hasPassenger to true
+                vehicle.setHasPassenger(true);
+                System.out.println(vehicle.getVehicleID() + " has picked up a passenger.");
+            } else {
+                // If it has reached the drop-off point, complete the ride
+                vehicle.setHasPassenger(false);
+                vehicle.getRideRequests().remove(0); // Remove the completed ride request
+                engine.updateAvailability(vehicle); // The vehicle is idle again
+                System.out.println(vehicle.getVehicleID() + " has dropped off the passenger.");
+            }
+        }
+    }
+}
@@ -0,0 +1,118 @@
+// This class keeps track of which vehicles of a fleet can take another ride request, so dispatching does not walk the
+// whole fleet to find them. Vehicles are kept by fleet position in bit sets: the idle ones (nothing assigned and nobody
+// on board) and one set per number of free seats. Two VehicleIndex grids, one over the idle vehicles and one over the
+// vehicles with a free seat, answer nearest-vehicle queries without visiting the full or busy ones.
+// Free seats are counted the way Vehicle.addRideRequest checks them: the seat capacity less the assigned and picked-up
+// requests. Nothing is tracked automatically: call update(vehicle) after a request is assigned to the vehicle or
+// dropped off, and after the vehicle moves. A pick-up changes neither the free seats nor whether the vehicle is idle.
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class FleetAvailability {
+
+    private List<Vehicle> fleet;
+    private Map<Vehicle, Integer> positions; // Position of each vehicle in the fleet list
+    private int[] freeSeats;                 // Free seats of each vehicle when it was last updated
+    private BitSet idle = new BitSet();      // Fleet positions of the idle vehicles
+    private BitSet[] bySeats = new BitSet[0]; // bySeats[s] holds the fleet positions of the vehicles with exactly s free seats
+    private int[] seatCounts = new int[0];    // Number of vehicles in each bySeats set
+    private VehicleIndex idleIndex;          // Grid over the idle vehicles
+    private VehicleIndex freeSeatIndex;      // Grid over the vehicles with at least one free seat
+
+    public FleetAvailability(List<Vehicle> fleet) {
+        //Constructor
+        this.fleet = fleet;
+        this.positions = new IdentityHashMap<>();
+        this.freeSeats = new int[fleet.size()];
+        Arrays.fill(freeSeats, -1); // Not in any set yet
+        for (int i = 0; i < fleet.size(); i++) {
+            positions.put(fleet.get(i), i);
+            update(fleet.get(i));
+        }
+        this.idleIndex = new VehicleIndex(fleet, VehicleIndex.DEFAULT_CELL_DEGREES, Vehicle::isEmpty);
+        this.freeSeatIndex = new VehicleIndex(fleet, VehicleIndex.DEFAULT_CELL_DEGREES, vehicle -> freeSeats(vehicle) > 0);
+    }
+
+    // Method to file a vehicle under its current free seats, idleness and position
+    public void update(Vehicle vehicle) {
+        int position = positions.get(vehicle);
+        idle.set(position, vehicle.isEmpty());
+        int seats = freeSeats(vehicle);
+        if (seats != freeSeats[position]) {
+            if (freeSeats[position] >= 0) {
+                bySeats[freeSeats[position]].clear(position);
+                seatCounts[freeSeats[position]]--;
+            }
+            if (seats >= bySeats.length) {
+                int old = bySeats.length;
+                bySeats = Arrays.copyOf(bySeats, seats + 1);
+                seatCounts = Arrays.copyOf(seatCounts, seats + 1);
+                for (int s = old; s <= seats; s++) {
+                    bySeats[s] = new BitSet();
+                }
+            }
+            bySeats[seats].set(position);
+            seatCounts[seats]++;
+            freeSeats[position] = seats;
+        }
+        if (idleIndex != null) { // The grids are built after the first pass of the constructor
+            idleIndex.update(vehicle);
+            freeSeatIndex.update(vehicle);
+        }
+    }
+
+    // Free seats of a vehicle, never below zero
+    public static int freeSeats(Vehicle vehicle) {
+        return Math.max(0, vehicle.getSeatCapacity() - vehicle.getRideRequests().size() - vehicle.getPickedUpRequests().size());
+    }
+
+    // Method to get the idle vehicle that comes first in the fleet list, or null if none is idle
+    public Vehicle firstIdle() {
+        int position = idle.nextSetBit(0);
+        return position < 0 ? null : fleet.get(position);
+    }
+
+    // Method to get the idle vehicle closest to a node (ties in fleet order), or null if none is idle
+    public Vehicle nearestIdle(Node target) {
+        return idleIndex.nearest(target, vehicle -> true);
+    }
+
+    // Method to get the vehicle with a free seat closest to a node (ties in fleet order), or null if every vehicle is full
+    public Vehicle nearestWithFreeSeat(Node target) {
+        return freeSeatIndex.nearest(target, vehicle -> true);
+    }
+
+    // Method to get up to k vehicles with a free seat, closest first (ties in fleet order)
+    public List<Vehicle> nearestWithFreeSeat(Node target, int k) {
+        return freeSeatIndex.nearest(target, k, vehicle -> true);
+    }
+
+    // Method to get the vehicle that comes first in the fleet list among those with at least seats free, or null if there is none
+    public Vehicle firstWithFreeSeats(int seats) {
+        int best = -1;
+        for (int s = Math.max(seats, 0); s < bySeats.length; s++) {
+            int position = bySeats[s].nextSetBit(0);
+            if (position >= 0 && (best < 0 || position < best)) {
+                best = position;
+            }
+        }
+        return best < 0 ? null : fleet.get(best);
+    }
+
+    // Number of vehicles with at least seats free
+    public int countWithFreeSeats(int seats) {
+        int count = 0;
+        for (int s = Math.max(seats, 0); s < seatCounts.length; s++) {
+            count += seatCounts[s];
+        }
+        return count;
+    }
+
+    public int getIdleCount() {
+        return idle.cardinality();
+    }
+}
@@ -0,0 +1,51 @@
+// This class is the straight-line heuristic: the distance in kilometers between two nodes, computed with one of
+// the GeoDistance modes. HAVERSINE is the original heuristic. The radians, cosines and unit vectors of every node are
+// precomputed into arrays, so an estimate does at most two sines, two square roots and an atan2 (CHORD needs one sqrt).
+public class GeometricHeuristic implements Heuristic {
+
+    private GeoDistance.Mode mode;
+    private double[] latitudeRadians;
+    private double[] longitudeRadians;
+    private double[] cosLatitude;
+    private double[] unitX;
+    private double[] unitY;
+    private double[] unitZ;
+
+    public GeometricHeuristic(RoadNetwork graph, GeoDistance.Mode mode) {
+        //Constructor
+        this.mode = mode;
+        int n = graph.getNodeCount();
+        latitudeRadians = new double[n];
+        longitudeRadians = new double[n];
+        cosLatitude = new double[n];
+        unitX = new double[n];
+        unitY = new double[n];
+        unitZ = new double[n];
+        for (int i = 0; i < n; i++) {
+            latitudeRadians[i] = Math.toRadians(graph.getLatitude(i));
+            longitudeRadians[i] = Math.toRadians(graph.getLongitude(i));
+            cosLatitude[i] = Math.cos(latitudeRadians[i]);
+            unitX[i] = cosLatitude[i] * Math.cos(longitudeRadians[i]);
+            unitY[i] = cosLatitude[i] * Math.sin(longitudeRadians[i]);
+            unitZ[i] = Math.sin(latitudeRadians[i]);
+        }
+    }
+
+    public GeoDistance.Mode getMode() {
+        return mode;
+    }
+
+    @Override
+    public double estimate(int node, int goal) {
+        switch (mode) {
+            case CHORD:
+                return GeoDistance.chord(unitX[node], unitY[node], unitZ[node], unitX[goal], unitY[goal], unitZ[goal]);
+            case EQUIRECTANGULAR:
+                return GeoDistance.equirectangular(latitudeRadians[node], longitudeRadians[node], cosLatitude[node],
+                        latitudeRadians[goal], longitudeRadians[goal], cosLatitude[goal]);
+            default:
+                return GeoDistance.haversineRadians(latitudeRadians[node], longitudeRadians[node], cosLatitude[node],
+                        latitudeRadians[goal], longitudeRadians[goal], cosLatitude[goal]);
+        }
+    }
+}
@@ -2,46 +2,84 @@ import java.util.*;
 
 public class Graph {
     private Map<Node, List<Edge>> adjList; // Adjacency list representation of the graph
+    private NodeRegistry registry; // Canonical node and dense index of each id, in the order they were added
+    private int version; // Incremented on every change so routing structures know when to rebuild
+    private List<Edge> edgeList; // Every directed edge, in the order it was added
+    private LongIntHashMap edgeIndex; // Position in edgeList of the first edge for each (from id, to id) pair
 
     public Graph() {
         adjList = new HashMap<>(); // Hashmap to store the edges in the graph
+        registry = new NodeRegistry();
+        version = 0;
+        edgeList = new ArrayList<>();
+        edgeIndex = new LongIntHashMap(16, -1);
     }
 
     // Method to add a node to the graph
     public void addNode(Node node) {
-        adjList.putIfAbsent(node, new ArrayList<>()); // Add a node to the adjacency list
+        if (adjList.putIfAbsent(node, new ArrayList<>()) == null) { // Add a node to the adjacency list
+            registry.intern(node);
+            version++;
+        }
     }
 
     // Method to add an edge between two nodes
     public void addEdge(Node from, Node to, double weight) {
-        adjList.get(from).add(new Edge(from, to, weight)); // Add an edge from "from" to "to"
+        from = canonical(from); // Edges always refer to the node objects that were added to the graph
+        to = canonical(to);
+        addIndexedEdge(new Edge(from, to, weight)); // Add an edge from "from" to "to"
         
         //Remove to make graph directed.
-        adjList.get(to).add(new Edge(to, from, weight)); // Assuming an undirected graph, add an edge from "to" to "from"
+        addIndexedEdge(new Edge(to, from, weight)); // Assuming an undirected graph, add an edge from "to" to "from"
+        version++;
+    }
+
+    // Method to add a one-way edge from one node to another
+    public void addDirectedEdge(Node from, Node to, double weight) {
+        addIndexedEdge(new Edge(canonical(from), canonical(to), weight));
+        version++;
+    }
+
+    // Add a directed edge to the adjacency list and the (from, to) index
+    private void addIndexedEdge(Edge edge) {
+        adjList.get(edge.getEdgeStart()).add(edge);
+        long key = LongIntHashMap.key(registry.indexOf(edge.getEdgeStart()), registry.indexOf(edge.getEdgeEnd()));
+        if (!edgeIndex.containsKey(key)) { // Like the adjacency scan it replaces, the first parallel edge wins
+            edgeIndex.put(key, edgeList.size());
+        }
+        edgeList.add(edge);
+    }
+
+    // The registered node with the same id, or the node itself if no such node was added
+    private Node canonical(Node node) {
+        Node registered = registry.getNode(node.getId());
+        return registered != null ? registered : node;
+    }
+
+    // Method to find the edge from one node to another in constant time, or null if there is none
+    public Edge findEdge(Node from, Node to) {
+        int fromId = registry.indexOf(from);
+        int toId = registry.indexOf(to);
+        if (fromId < 0 || toId < 0) {
+            return null;
+        }
+        int position = edgeIndex.get(LongIntHashMap.key(fromId, toId));
+        return position < 0 ? null : edgeList.get(position);
     }
     
     // Method to get the weight of the edge between two nodes
     public double getEdgeWeight(Node currentNode, Node nextNode) {
-        List<Edge> edges = adjList.get(currentNode); // Get edges of the current node
-        if (edges != null) {
-            for (Edge edge : edges) {
-                if (edge.getEdgeEnd().equals(nextNode)) {
-                    return edge.getWeight(); // Return the weight of the edge
-                }
-            }
+        Edge edge = findEdge(currentNode, nextNode);
+        if (edge != null) {
+            return edge.getWeight(); // Return the weight of the edge
         }
         return Double.MAX_VALUE; // Return a large value if no edge is found (infinite cost)
     }
 
     // Method to get the weight of the edge between two nodes in an unweighted graph
     public double getEdgeWeightUnweighted(Node currentNode, Node nextNode) {
-        List<Edge> edges = adjList.get(currentNode); // Get edges of the current node
-        if (edges != null) {
-            for (Edge edge : edges) {
-                if (edge.getEdgeEnd().equals(nextNode)) {
-                    return 1.0; // Return a constant value for an unweighted graph
-                }
-            }
+        if (hasEdge(currentNode, nextNode)) {
+            return 1.0; // Return a constant value for an unweighted graph
         }
         return Double.MAX_VALUE; // Return a large value if no edge is found (infinite cost)
     }
@@ -52,6 +90,21 @@ public class Graph {
         return adjList.get(node); // Return the list of edges for the given node
     }
 
+    // Method to get all nodes in insertion order
+    public List<Node> getNodes() {
+        return registry.getNodes();
+    }
+
+    // Method to get the registry that gives each node its dense index
+    public NodeRegistry getNodeRegistry() {
+        return registry;
+    }
+
+    // Method to get the modification counter of the graph
+    public int getVersion() {
+        return version;
+    }
+
     // Method to get the count of nodes in the graph
     public void getNodeCount() {
         System.out.println("The graph has " + adjList.keySet().size() + " nodes.");
@@ -68,30 +121,28 @@ public class Graph {
     }
 
     // Method to check if a node is present in the graph
-    public void hasNode(Node node) {
-        if (adjList.containsKey(node)) {
-            System.out.println("The graph contains " + node.getId() + " as a node.");
-        } else {
-            System.out.println("The graph does not contain " + node.getId() + " as a node.");
-        }
+    public boolean hasNode(Node node) {
+        return adjList.containsKey(node);
     }
 
     // Method to check if an edge exists between two nodes
-    public void hasEdge(Node from, Node to) {
-        boolean hasEdge = false;
-        if (adjList.containsKey(from)) {
-            for (Edge edge : adjList.get(from)) {
-                if (edge.getEdgeEnd().equals(to)) {
-                    hasEdge = true;
-                    break;
-                }
-            }
+    public boolean hasEdge(Node from, Node to) {
+        return findEdge(from, to) != null;
+    }
+
+    // Methods to describe the result of hasNode and hasEdge
+    public String describeNode(Node node) {
+        if (hasNode(node)) {
+            return "The graph contains " + node.getId() + " as a node.";
         }
-        if (hasEdge) {
-            System.out.println("The graph has an edge between " + from.getId() + " and " + to.getId() + ".");
-        } else {
-            System.out.println("The graph has no edge between " + from.getId() + " and " + to.getId() + ".");
+        return "The graph does not contain " + node.getId() + " as a node.";
+    }
+
+    public String describeEdge(Node from, Node to) {
+        if (hasEdge(from, to)) {
+            return "The graph has an edge between " + from.getId() + " and " + to.getId() + ".";
         }
+        return "The graph has no edge between " + from.getId() + " and " + to.getId() + ".";
     }
 
     // Method to print the neighbors of a node
@@ -108,7 +159,7 @@ public class Graph {
     @Override
     public String toString() {
         StringBuilder builder = new StringBuilder();
-        for (Node node : adjList.keySet()) {
+        for (Node node : registry.getNodes()) { // Insertion order, so the output does not depend on hash codes
             builder.append(node.getId()).append(": ");
             for (Edge edge : adjList.get(node)) {
                 builder.append(edge.getEdgeEnd().getId()).append(" (").append(edge.getWeight()).append("), ");
@@ -156,12 +207,12 @@ public class Graph {
         graph.getEdgeCount(); // Expected: 4 edges (since it's undirected)
 
         // Check if specific nodes exist
-        graph.hasNode(nodeA); // Expected: The graph contains A as a node.
-        graph.hasNode(new Node("E", -33.9295, 18.4218)); // Expected: The graph does not contain E as a node.
+        System.out.println(graph.describeNode(nodeA)); // Expected: The graph contains A as a node.
+        System.out.println(graph.describeNode(new Node("E", -33.9295, 18.4218))); // Expected: The graph does not contain E as a node.
 
         // Check if specific edges exist
-        graph.hasEdge(nodeA, nodeB); // Expected: The graph has an edge between A and B.
-        graph.hasEdge(nodeA, nodeD); // Expected: The graph has no edge between A and D.
+        System.out.println(graph.describeEdge(nodeA, nodeB)); // Expected: The graph has an edge between A and B.
+        System.out.println(graph.describeEdge(nodeA, nodeD)); // Expected: The graph has no edge between A and D.
 
         // Get neighbors of a node
         graph.neighbors(nodeA); // Expected: The neighbors of A are: B, C,
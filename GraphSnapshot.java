@@ -0,0 +1,410 @@
+// This class is a road network read in place from a memory-mapped snapshot file.
+// write stores the CSR arrays of a RoadNetwork (forward and reverse adjacency, coordinates and node ids) in a versioned
+// binary file once. open maps each section with FileChannel.map and every query reads straight from the mapped pages,
+// so there is no deserialization step: opening costs a few system calls whatever the size of the network, and the
+// operating system pages data in as searches touch it. Files derived from the network (such as landmark tables) are
+// checked against the fingerprint stored in the header.
+//
+// Layout, little endian, every section starts on an 8 byte boundary and is mapped on its own (so up to 2 GB each):
+//   header          magic "RNS1", format version, node count n, edge count m, fingerprint, id byte count
+//   latitudes       double[n]
+//   longitudes      double[n]
+//   weights         double[m]
+//   offsets         int[n + 1]   outgoing edges of u are offsets[u] .. offsets[u + 1] - 1
+//   targets         int[m]
+//   reverseOffsets  int[n + 1]   incoming edges of v, same layout
+//   reverseEdges    int[m]       forward edge index of each incoming edge
+//   sources         int[m]       start node of each edge
+//   idOffsets       int[n + 1]   UTF-8 id of node u is idBytes[idOffsets[u] .. idOffsets[u + 1] - 1]
+//   idOrder         int[n]       node ids sorted by their id bytes, for indexOf
+//   idBytes         byte[]
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+public class GraphSnapshot implements RoadNetwork {
+
+    private static final int FILE_MAGIC = 0x524E5331; // "RNS1"
+    private static final int FILE_VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+
+    private int nodeCount;
+    private int edgeCount;
+    private long fingerprint;
+    private DoubleBuffer latitudes;
+    private DoubleBuffer longitudes;
+    private DoubleBuffer weights;
+    private IntBuffer offsets;
+    private IntBuffer targets;
+    private IntBuffer reverseOffsets;
+    private IntBuffer reverseEdges;
+    private IntBuffer sources;
+    private IntBuffer idOffsets;
+    private IntBuffer idOrder;
+    private ByteBuffer idBytes;
+    private AtomicReferenceArray<Node> nodes; // Node objects made on first use, so each node is decoded once per snapshot
+
+    private GraphSnapshot() {
+        //Constructor, use open
+    }
+
+    // Method to map a snapshot file, throws if it is not a snapshot or was written by another format version
+    public static GraphSnapshot open(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) {
+                throw new IOException("not a graph snapshot");
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt(0) != FILE_MAGIC) {
+                throw new IOException("not a graph snapshot");
+            }
+            if (header.getInt(4) != FILE_VERSION) {
+                throw new IOException("unsupported graph snapshot version " + header.getInt(4));
+            }
+            GraphSnapshot snapshot = new GraphSnapshot();
+            int n = header.getInt(8);
+            int m = header.getInt(12);
+            long idByteCount = header.getLong(24);
+            snapshot.nodeCount = n;
+            snapshot.edgeCount = m;
+            snapshot.fingerprint = header.getLong(16);
+            if (channel.size() != fileSize(n, m, idByteCount)) {
+                throw new IOException("graph snapshot is truncated");
+            }
+
+            // The mappings stay valid after the channel is closed
+            long position = HEADER_BYTES;
+            snapshot.latitudes = map(channel, position, 8L * n).asDoubleBuffer();
+            position = align(position + 8L * n);
+            snapshot.longitudes = map(channel, position, 8L * n).asDoubleBuffer();
+            position = align(position + 8L * n);
+            snapshot.weights = map(channel, position, 8L * m).asDoubleBuffer();
+            position = align(position + 8L * m);
+            snapshot.offsets = map(channel, position, 4L * (n + 1)).asIntBuffer();
+            position = align(position + 4L * (n + 1));
+            snapshot.targets = map(channel, position, 4L * m).asIntBuffer();
+            position = align(position + 4L * m);
+            snapshot.reverseOffsets = map(channel, position, 4L * (n + 1)).asIntBuffer();
+            position = align(position + 4L * (n + 1));
+            snapshot.reverseEdges = map(channel, position, 4L * m).asIntBuffer();
+            position = align(position + 4L * m);
+            snapshot.sources = map(channel, position, 4L * m).asIntBuffer();
+            position = align(position + 4L * m);
+            snapshot.idOffsets = map(channel, position, 4L * (n + 1)).asIntBuffer();
+            position = align(position + 4L * (n + 1));
+            snapshot.idOrder = map(channel, position, 4L * n).asIntBuffer();
+            position = align(position + 4L * n);
+            snapshot.idBytes = map(channel, position, idByteCount);
+            snapshot.nodes = new AtomicReferenceArray<>(n);
+            return snapshot;
+        }
+    }
+
+    // Method to write a network to a snapshot file
+    public static void write(RoadNetwork network, File file) throws IOException {
+        int n = network.getNodeCount();
+        int m = network.getEdgeCount();
+        byte[][] ids = new byte[n][];
+        long idByteCount = 0;
+        for (int i = 0; i < n; i++) {
+            ids[i] = network.getNode(i).getId().getBytes(StandardCharsets.UTF_8);
+            idByteCount += ids[i].length;
+        }
+        if (idByteCount > Integer.MAX_VALUE) {
+            throw new IOException("node ids take more than 2 GB");
+        }
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Arrays.compareUnsigned(ids[a], ids[b]));
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            SectionWriter out = new SectionWriter(channel);
+            out.putInt(FILE_MAGIC);
+            out.putInt(FILE_VERSION);
+            out.putInt(n);
+            out.putInt(m);
+            out.putLong(network.fingerprint());
+            out.putLong(idByteCount);
+
+            for (int i = 0; i < n; i++) out.putDouble(network.getLatitude(i));
+            out.align();
+            for (int i = 0; i < n; i++) out.putDouble(network.getLongitude(i));
+            out.align();
+            for (int edge = 0; edge < m; edge++) out.putDouble(network.getWeight(edge));
+            out.align();
+            for (int i = 0; i < n; i++) out.putInt(network.firstEdge(i));
+            out.putInt(m);
+            out.align();
+            for (int edge = 0; edge < m; edge++) out.putInt(network.getTarget(edge));
+            out.align();
+            for (int i = 0; i < n; i++) out.putInt(network.firstInEdge(i));
+            out.putInt(m);
+            out.align();
+            for (int i = 0; i < m; i++) out.putInt(network.getInEdge(i));
+            out.align();
+            for (int edge = 0; edge < m; edge++) out.putInt(network.getSource(edge));
+            out.align();
+            int idOffset = 0;
+            for (int i = 0; i < n; i++) {
+                out.putInt(idOffset);
+                idOffset += ids[i].length;
+            }
+            out.putInt(idOffset);
+            out.align();
+            for (int i = 0; i < n; i++) out.putInt(order[i]);
+            out.align();
+            for (int i = 0; i < n; i++) out.putBytes(ids[i]);
+            out.flush();
+        }
+    }
+
+    @Override
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    @Override
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    @Override
+    public int firstEdge(int node) {
+        return offsets.get(node);
+    }
+
+    @Override
+    public int endEdge(int node) {
+        return offsets.get(node + 1);
+    }
+
+    @Override
+    public int getTarget(int edge) {
+        return targets.get(edge);
+    }
+
+    @Override
+    public double getWeight(int edge) {
+        return weights.get(edge);
+    }
+
+    @Override
+    public int firstInEdge(int node) {
+        return reverseOffsets.get(node);
+    }
+
+    @Override
+    public int endInEdge(int node) {
+        return reverseOffsets.get(node + 1);
+    }
+
+    @Override
+    public int getInEdge(int index) {
+        return reverseEdges.get(index);
+    }
+
+    @Override
+    public int getSource(int edge) {
+        return sources.get(edge);
+    }
+
+    @Override
+    public double getLatitude(int node) {
+        return latitudes.get(node);
+    }
+
+    @Override
+    public double getLongitude(int node) {
+        return longitudes.get(node);
+    }
+
+    // Fingerprint of the network the snapshot was written from, read from the header
+    @Override
+    public long fingerprint() {
+        return fingerprint;
+    }
+
+    // Method to get the id of a node, decoded from the mapped id bytes
+    public String getId(int node) {
+        int start = idOffsets.get(node);
+        byte[] bytes = new byte[idOffsets.get(node + 1) - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = idBytes.get(start + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Method to get a node, the Node object is made on the first call and the same one is returned afterwards
+    @Override
+    public Node getNode(int node) {
+        Node cached = nodes.get(node);
+        if (cached == null) {
+            // Threads that race here all end up with the node that was stored first
+            nodes.compareAndSet(node, null, new Node(getId(node), getLatitude(node), getLongitude(node)));
+            cached = nodes.get(node);
+        }
+        return cached;
+    }
+
+    @Override
+    public int indexOf(Node node) {
+        return indexOf(node.getId());
+    }
+
+    // Method to get the dense id of the node with an id, or -1, by binary search over the sorted id order
+    public int indexOf(String id) {
+        int low = 0;
+        int high = nodeCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int node = idOrder.get(middle);
+            int comparison = compareId(node, id);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return node;
+            }
+        }
+        return -1;
+    }
+
+    // Compare the id bytes of a node with an id the same way the writer sorted them, without encoding the id. UTF-8
+    // byte order is code point order, so the mapped bytes are decoded one code point at a time and compared with the
+    // id's code points.
+    private int compareId(int node, String id) {
+        int position = idOffsets.get(node);
+        int end = idOffsets.get(node + 1);
+        int i = 0;
+        while (position < end && i < id.length()) {
+            int lead = idBytes.get(position) & 0xFF;
+            int stored;
+            int length;
+            if (lead < 0x80) {
+                stored = lead;
+                length = 1;
+            } else if (lead < 0xE0) {
+                stored = lead & 0x1F;
+                length = 2;
+            } else if (lead < 0xF0) {
+                stored = lead & 0x0F;
+                length = 3;
+            } else {
+                stored = lead & 0x07;
+                length = 4;
+            }
+            for (int k = 1; k < length; k++) {
+                stored = (stored << 6) | (idBytes.get(position + k) & 0x3F);
+            }
+            position += length;
+
+            int wanted = id.codePointAt(i);
+            i += Character.charCount(wanted);
+            if (wanted >= Character.MIN_SURROGATE && wanted <= Character.MAX_SURROGATE) {
+                wanted = '?'; // An unpaired surrogate, written as '?' like String.getBytes does
+            }
+            if (stored != wanted) {
+                return Integer.compare(stored, wanted);
+            }
+        }
+        return Boolean.compare(position < end, i < id.length());
+    }
+
+    private static ByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static long align(long position) {
+        return (position + 7) & ~7L;
+    }
+
+    // Expected length of a file with n nodes, m edges and the given id bytes
+    private static long fileSize(int n, int m, long idByteCount) {
+        long position = HEADER_BYTES;
+        position = align(position + 8L * n);
+        position = align(position + 8L * n);
+        position = align(position + 8L * m);
+        position = align(position + 4L * (n + 1));
+        position = align(position + 4L * m);
+        position = align(position + 4L * (n + 1));
+        position = align(position + 4L * m);
+        position = align(position + 4L * m);
+        position = align(position + 4L * (n + 1));
+        position = align(position + 4L * n);
+        return position + idByteCount;
+    }
+
+    // This class buffers the primitives written to a snapshot and keeps track of the file position for alignment
+    private static class SectionWriter {
+
+        private FileChannel channel;
+        private ByteBuffer buffer = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+        private long position;
+
+        private SectionWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        private void putInt(int value) throws IOException {
+            ensure(4);
+            buffer.putInt(value);
+            position += 4;
+        }
+
+        private void putLong(long value) throws IOException {
+            ensure(8);
+            buffer.putLong(value);
+            position += 8;
+        }
+
+        private void putDouble(double value) throws IOException {
+            ensure(8);
+            buffer.putDouble(value);
+            position += 8;
+        }
+
+        private void putBytes(byte[] bytes) throws IOException {
+            for (byte b : bytes) {
+                ensure(1);
+                buffer.put(b);
+            }
+            position += bytes.length;
+        }
+
+        // Pad with zeros up to the next 8 byte boundary
+        private void align() throws IOException {
+            while ((position & 7) != 0) {
+                ensure(1);
+                buffer.put((byte) 0);
+                position++;
+            }
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,7 @@
+// This interface is a lower bound on the travel cost between two nodes of a RoadNetwork, used to guide A*.
+// Implementations must never overestimate the cost or the search stops being optimal.
+public interface Heuristic {
+
+    double estimate(int node, int goal);
+
+}
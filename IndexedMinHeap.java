@@ -0,0 +1,115 @@
+// This class is a binary min-heap over the integers 0..capacity-1 with a double key per item.
+// Each item's position in the heap is tracked so its key can be lowered in place (decrease-key).
+
+import java.util.Arrays;
+
+public class IndexedMinHeap {
+
+    private int[] heap;      // Items in heap order
+    private int[] position;  // Position of each item in the heap, -1 if the item is not in the heap
+    private double[] keys;   // Key of each item, only valid while the item is in the heap
+    private int size;        // Number of items currently in the heap
+
+    public IndexedMinHeap(int capacity) {
+        //Constructor
+        heap = new int[capacity];
+        position = new int[capacity];
+        keys = new double[capacity];
+        Arrays.fill(position, -1);
+        size = 0;
+    }
+
+    public int getCapacity() {
+        return position.length;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean contains(int item) {
+        return position[item] >= 0;
+    }
+
+    public double getKey(int item) {
+        return keys[item];
+    }
+
+    // Method to add an item, or lower its key if it is already in the heap and the new key is smaller
+    public void insertOrDecrease(int item, double key) {
+        if (position[item] < 0) {
+            heap[size] = item;
+            position[item] = size;
+            keys[item] = key;
+            siftUp(size++);
+        } else if (key < keys[item]) {
+            keys[item] = key;
+            siftUp(position[item]);
+        }
+    }
+
+    // Method to get the item with the smallest key without removing it
+    public int peek() {
+        return heap[0];
+    }
+
+    // Method to remove and return the item with the smallest key
+    public int poll() {
+        int top = heap[0];
+        position[top] = -1;
+        size--;
+        if (size > 0) {
+            int last = heap[size];
+            heap[0] = last;
+            position[last] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    // Method to empty the heap, touching only the items that are still in it
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            position[heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    private void siftUp(int index) {
+        int item = heap[index];
+        double key = keys[item];
+        while (index > 0) {
+            int parentIndex = (index - 1) >>> 1;
+            int parent = heap[parentIndex];
+            if (keys[parent] <= key) break;
+            heap[index] = parent;
+            position[parent] = index;
+            index = parentIndex;
+        }
+        heap[index] = item;
+        position[item] = index;
+    }
+
+    private void siftDown(int index) {
+        int item = heap[index];
+        double key = keys[item];
+        int half = size >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            int right = child + 1;
+            if (right < size && keys[heap[right]] < keys[heap[child]]) {
+                child = right;
+            }
+            if (key <= keys[heap[child]]) break;
+            heap[index] = heap[child];
+            position[heap[index]] = index;
+            index = child;
+        }
+        heap[index] = item;
+        position[item] = index;
+    }
+}
@@ -0,0 +1,273 @@
+// This class is the ALT (A*, landmarks, triangle inequality) heuristic.
+// A few landmark nodes are chosen and the exact shortest path cost from and to every node is precomputed for each.
+// By the triangle inequality d(v, t) >= d(L, t) - d(L, v) and d(v, t) >= d(v, L) - d(t, L), so the largest of these
+// differences is a lower bound in the same units as the edge weights, unlike the great-circle distance in km.
+// The tables only depend on the graph, so they are saved to disk and reused while the graph is unchanged.
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+public class LandmarkHeuristic implements Heuristic {
+
+    public enum Selection { FARTHEST, AVOID }
+
+    private static final int FILE_MAGIC = 0x414C5431; // "ALT1"
+    private static final int FILE_VERSION = 1;
+
+    private RoadNetwork graph;
+    private int[] landmarks;         // Dense ids of the landmark nodes
+    private double[][] fromLandmark; // fromLandmark[i][v] is the cost from landmark i to v
+    private double[][] toLandmark;   // toLandmark[i][v] is the cost from v to landmark i
+
+    private LandmarkHeuristic(RoadNetwork graph, int[] landmarks, double[][] fromLandmark, double[][] toLandmark) {
+        //Constructor
+        this.graph = graph;
+        this.landmarks = landmarks;
+        this.fromLandmark = fromLandmark;
+        this.toLandmark = toLandmark;
+    }
+
+    @Override
+    public double estimate(int node, int goal) {
+        double best = 0.0;
+        for (int i = 0; i < landmarks.length; i++) {
+            double[] from = fromLandmark[i];
+            double[] to = toLandmark[i];
+            double forward = from[goal] - from[node];
+            double backward = to[node] - to[goal];
+            // Unreachable entries give infinite or NaN differences, which are skipped rather than returned
+            if (forward > best && forward != Double.POSITIVE_INFINITY) best = forward;
+            if (backward > best && backward != Double.POSITIVE_INFINITY) best = backward;
+        }
+        return best;
+    }
+
+    public int[] getLandmarks() {
+        return landmarks.clone();
+    }
+
+    public RoadNetwork getGraph() {
+        return graph;
+    }
+
+    // Method to choose landmarks and compute their distance tables
+    public static LandmarkHeuristic build(RoadNetwork graph, int landmarkCount, Selection selection) {
+        int n = graph.getNodeCount();
+        landmarkCount = Math.min(landmarkCount, n);
+        Random random = new Random(n); // Seeded by the graph size so the same graph always gets the same landmarks
+        int[] landmarks = new int[landmarkCount];
+        double[][] fromLandmark = new double[landmarkCount][];
+        double[][] toLandmark = new double[landmarkCount][];
+        LandmarkHeuristic heuristic = new LandmarkHeuristic(graph, new int[0], new double[0][], new double[0][]);
+
+        for (int i = 0; i < landmarkCount; i++) {
+            int landmark;
+            if (i == 0 || selection == Selection.FARTHEST) {
+                landmark = selectFarthest(graph, fromLandmark, i, random.nextInt(n));
+            } else {
+                landmark = selectAvoid(heuristic, random.nextInt(n));
+            }
+            landmarks[i] = landmark;
+            fromLandmark[i] = dijkstra(graph, landmark, false, null);
+            toLandmark[i] = dijkstra(graph, landmark, true, null);
+            heuristic.landmarks = Arrays.copyOf(landmarks, i + 1);
+            heuristic.fromLandmark = Arrays.copyOf(fromLandmark, i + 1);
+            heuristic.toLandmark = Arrays.copyOf(toLandmark, i + 1);
+        }
+        return heuristic;
+    }
+
+    // Method to load the tables from a file, or build them and write the file if it is missing or was made for another graph
+    public static LandmarkHeuristic loadOrBuild(RoadNetwork graph, int landmarkCount, Selection selection, File file) {
+        if (file.exists()) {
+            try {
+                LandmarkHeuristic loaded = load(graph, file);
+                if (loaded != null && loaded.landmarks.length == Math.min(landmarkCount, graph.getNodeCount())) {
+                    return loaded;
+                }
+            } catch (IOException e) {
+                System.out.println("Could not read landmark tables from " + file + ": " + e.getMessage());
+            }
+        }
+        LandmarkHeuristic built = build(graph, landmarkCount, selection);
+        try {
+            built.save(file);
+        } catch (IOException e) {
+            System.out.println("Could not save landmark tables to " + file + ": " + e.getMessage());
+        }
+        return built;
+    }
+
+    // Method to write the landmark tables to a file
+    public void save(File file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(FILE_VERSION);
+            out.writeLong(graph.fingerprint());
+            out.writeInt(graph.getNodeCount());
+            out.writeInt(landmarks.length);
+            for (int i = 0; i < landmarks.length; i++) {
+                out.writeInt(landmarks[i]);
+            }
+            for (int i = 0; i < landmarks.length; i++) {
+                for (double distance : fromLandmark[i]) {
+                    out.writeDouble(distance);
+                }
+                for (double distance : toLandmark[i]) {
+                    out.writeDouble(distance);
+                }
+            }
+        }
+    }
+
+    // Method to read landmark tables from a file, returns null if the file was written for a different graph
+    public static LandmarkHeuristic load(RoadNetwork graph, File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION) {
+                throw new IOException("not a landmark table file");
+            }
+            if (in.readLong() != graph.fingerprint() || in.readInt() != graph.getNodeCount()) {
+                return null; // Stale tables
+            }
+            int n = graph.getNodeCount();
+            int count = in.readInt();
+            int[] landmarks = new int[count];
+            for (int i = 0; i < count; i++) {
+                landmarks[i] = in.readInt();
+            }
+            double[][] fromLandmark = new double[count][n];
+            double[][] toLandmark = new double[count][n];
+            for (int i = 0; i < count; i++) {
+                for (int v = 0; v < n; v++) {
+                    fromLandmark[i][v] = in.readDouble();
+                }
+                for (int v = 0; v < n; v++) {
+                    toLandmark[i][v] = in.readDouble();
+                }
+            }
+            return new LandmarkHeuristic(graph, landmarks, fromLandmark, toLandmark);
+        }
+    }
+
+    // Farthest selection: the node whose distance to the closest chosen landmark is largest
+    private static int selectFarthest(RoadNetwork graph, double[][] fromLandmark, int chosen, int start) {
+        double[] closest;
+        if (chosen == 0) {
+            closest = dijkstra(graph, start, false, null); // No landmarks yet, start from a random node
+        } else {
+            closest = fromLandmark[0].clone();
+            for (int i = 1; i < chosen; i++) {
+                for (int v = 0; v < closest.length; v++) {
+                    closest[v] = Math.min(closest[v], fromLandmark[i][v]);
+                }
+            }
+        }
+        int farthest = start;
+        for (int v = 0; v < closest.length; v++) {
+            if (closest[v] != Double.POSITIVE_INFINITY && closest[v] > closest[farthest]) {
+                farthest = v;
+            }
+        }
+        return farthest;
+    }
+
+    // Avoid selection: grow a shortest path tree from a random root, weight each node by how badly the current
+    // landmarks bound its distance from the root, and descend into the heaviest subtree that has no landmark yet
+    private static int selectAvoid(LandmarkHeuristic current, int root) {
+        RoadNetwork graph = current.graph;
+        int n = graph.getNodeCount();
+        int[] parent = new int[n];
+        double[] distance = dijkstra(graph, root, false, parent);
+
+        Integer[] order = new Integer[n];
+        for (int v = 0; v < n; v++) {
+            order[v] = v;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(distance[b], distance[a])); // Deepest nodes first
+
+        double[] size = new double[n];
+        boolean[] hasLandmark = new boolean[n];
+        for (int landmark : current.landmarks) {
+            hasLandmark[landmark] = true;
+        }
+        for (int v : order) {
+            if (distance[v] == Double.POSITIVE_INFINITY) continue;
+            size[v] += distance[v] - current.estimate(root, v);
+            if (hasLandmark[v]) size[v] = 0.0;
+            if (parent[v] >= 0) {
+                if (hasLandmark[v]) hasLandmark[parent[v]] = true;
+                size[parent[v]] += size[v];
+            }
+        }
+        for (int v = 0; v < n; v++) {
+            if (hasLandmark[v]) size[v] = 0.0;
+        }
+
+        // Children of each node in the tree, in CSR form
+        int[] childOffsets = new int[n + 1];
+        for (int v = 0; v < n; v++) {
+            if (parent[v] >= 0) childOffsets[parent[v] + 1]++;
+        }
+        for (int v = 0; v < n; v++) {
+            childOffsets[v + 1] += childOffsets[v];
+        }
+        int[] children = new int[childOffsets[n]];
+        int[] fill = Arrays.copyOf(childOffsets, n);
+        for (int v = 0; v < n; v++) {
+            if (parent[v] >= 0) children[fill[parent[v]]++] = v;
+        }
+
+        int node = root;
+        while (true) {
+            int heaviest = -1;
+            for (int i = childOffsets[node]; i < childOffsets[node + 1]; i++) {
+                int child = children[i];
+                if (size[child] > 0 && (heaviest < 0 || size[child] > size[heaviest])) {
+                    heaviest = child;
+                }
+            }
+            if (heaviest < 0) break;
+            node = heaviest;
+        }
+        if (node == root) {
+            // Every subtree already holds a landmark, fall back to the farthest rule
+            return selectFarthest(graph, current.fromLandmark, current.landmarks.length, root);
+        }
+        return node;
+    }
+
+    // Dijkstra over the forward (or reversed) edges from source, optionally recording the tree parents
+    private static double[] dijkstra(RoadNetwork graph, int source, boolean reverse, int[] parent) {
+        int n = graph.getNodeCount();
+        double[] distance = new double[n];
+        Arrays.fill(distance, Double.POSITIVE_INFINITY);
+        if (parent != null) Arrays.fill(parent, -1);
+        IndexedMinHeap queue = new IndexedMinHeap(n);
+        distance[source] = 0.0;
+        queue.insertOrDecrease(source, 0.0);
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            int first = reverse ? graph.firstInEdge(node) : graph.firstEdge(node);
+            int end = reverse ? graph.endInEdge(node) : graph.endEdge(node);
+            for (int i = first; i < end; i++) {
+                int edge = reverse ? graph.getInEdge(i) : i;
+                int next = reverse ? graph.getSource(edge) : graph.getTarget(edge);
+                double candidate = distance[node] + graph.getWeight(edge);
+                if (candidate < distance[next]) {
+                    distance[next] = candidate;
+                    if (parent != null) parent[next] = node;
+                    queue.insertOrDecrease(next, candidate);
+                }
+            }
+        }
+        return distance;
+    }
+}
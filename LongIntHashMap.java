@@ -0,0 +1,109 @@
+// This class is a hash map from long keys to int values using open addressing with linear probing.
+// Keys and values live in primitive arrays, so lookups never box and never allocate.
+// Used to find edges by their (from, to) dense id pair, see key(int, int).
+
+import java.util.Arrays;
+
+public class LongIntHashMap {
+
+    private long[] keys;
+    private int[] values;
+    private boolean[] used;
+    private int size;
+    private int mask;           // Table length - 1, the length is always a power of two
+    private int missingValue;   // Returned by get for keys that are not in the map
+
+    public LongIntHashMap(int expectedSize, int missingValue) {
+        //Constructor
+        int capacity = 16;
+        while (capacity * 3 < expectedSize * 4) { // Keep the load factor under 0.75
+            capacity <<= 1;
+        }
+        allocate(capacity);
+        this.missingValue = missingValue;
+    }
+
+    // Method to pack a pair of non-negative ints into one key
+    public static long key(int from, int to) {
+        return ((long) from << 32) | (to & 0xFFFFFFFFL);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int get(long key) {
+        int slot = slot(key);
+        while (used[slot]) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return missingValue;
+    }
+
+    public boolean containsKey(long key) {
+        int slot = slot(key);
+        while (used[slot]) {
+            if (keys[slot] == key) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    public void put(long key, int value) {
+        if ((size + 1) * 4 > keys.length * 3) {
+            grow();
+        }
+        int slot = slot(key);
+        while (used[slot]) {
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        used[slot] = true;
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+    }
+
+    public void clear() {
+        Arrays.fill(used, false);
+        size = 0;
+    }
+
+    private int slot(long key) {
+        // Finalizer of MurmurHash3 so that keys differing only in the high (from) half spread over the table
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key & mask;
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+        size = 0;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        boolean[] oldUsed = used;
+        allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+}
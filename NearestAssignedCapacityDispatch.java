@@ -0,0 +1,30 @@
+// This class assigns each request to the vehicle closest to its pick-up point among those with fewer requests waiting
+// for a pick-up than seats. Passengers already on board are not counted here, so the chosen vehicle can still turn the
+// request down, which defers it. Every vehicle's count is printed before each request. This is the dispatch of
+// SimulationNo2.
+
+import java.util.Queue;
+
+public class NearestAssignedCapacityDispatch implements DispatchPolicy {
+
+    @Override
+    public void allocate(SimulationEngine engine, Queue<RideRequest> newRequests) {
+        while (!newRequests.isEmpty()) {
+            RideRequest request = newRequests.poll(); // Get the next ride request
+            for (Vehicle vehicle : engine.getVehicles()) {
+                System.out.println(vehicle.getVehicleID() + " size is " + vehicle.getRideRequests().size());
+            }
+
+            // Find the closest vehicle to the ride request's pick-up point
+            Vehicle assignedVehicle = engine.getVehicleIndex().nearest(request.getPickUpPoint(),
+                    vehicle -> vehicle.getRideRequests().size() < vehicle.getSeatCapacity());
+
+            if (engine.assign(assignedVehicle, request)) {
+                System.out.println("Assigned " + request.getRideRequestID() + " to " + assignedVehicle.getVehicleID());
+                System.out.println(assignedVehicle.getVehicleID() + " size is " + assignedVehicle.getRideRequests().size());
+            } else {
+                engine.defer(request);
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+// This class assigns each request to the vehicle with a free seat closest to its pick-up point. With a
+// ShareabilityDispatcher the tick's requests are first pooled into shared trips, and with a BatchAssigner the requests
+// left are then assigned together; whatever they leave out is assigned one at a time. This is the dispatch of
+// SimulationProximity.
+// A pooled trip comes with the stop plan it was costed with, which replaces the vehicle's plan once all of the trip's
+// requests are assigned: run it with StopPlanSelection.
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+public class NearestFreeSeatDispatch implements DispatchPolicy {
+
+    private BatchAssigner batchAssigner; // Assigns each tick's requests together when set, otherwise requests are assigned greedily
+    private ShareabilityDispatcher shareabilityDispatcher; // Pools each tick's requests into shared trips when set
+
+    public NearestFreeSeatDispatch(BatchAssigner batchAssigner, ShareabilityDispatcher shareabilityDispatcher) {
+        //Constructor
+        this.batchAssigner = batchAssigner;
+        this.shareabilityDispatcher = shareabilityDispatcher;
+    }
+
+    @Override
+    public void allocate(SimulationEngine engine, Queue<RideRequest> newRequests) {
+        // With a shareability dispatcher, requests that can share a vehicle are pooled into trips first
+        if (shareabilityDispatcher != null && !newRequests.isEmpty()) {
+            for (ShareabilityDispatcher.Trip trip : shareabilityDispatcher.dispatch(new ArrayList<>(newRequests))) {
+                Vehicle vehicle = trip.getVehicle();
+                boolean allAssigned = true;
+                for (RideRequest request : trip.getRequests()) {
+                    newRequests.remove(request);
+                    if (engine.assign(vehicle, request)) {
+                        System.out.println("Assigned " + request.getRideRequestID() + " to " + vehicle.getVehicleID());
+                    } else {
+                        allAssigned = false;
+                        engine.defer(request);
+                    }
+                }
+                if (allAssigned) {
+                    vehicle.setStopPlan(trip.getPlan()); // The plan the trip was costed with
+                }
+                System.out.println(vehicle.getVehicleID() + " size is " + vehicle.getRideRequests().size());
+            }
+        }
+
+        // In batch mode assign the tick's requests together. Requests it leaves out, or all of them if it ran out of time, go through the greedy loop below.
+        if (batchAssigner != null && newRequests.size() > 1) {
+            List<RideRequest> batch = new ArrayList<>(newRequests);
+            Vehicle[] assigned = batchAssigner.assign(batch, FleetAvailability::freeSeats);
+            if (assigned == null) {
+                System.out.println("Batch assignment ran out of time, assigning greedily.");
+            } else {
+                for (int i = 0; i < batch.size(); i++) {
+                    if (engine.assign(assigned[i], batch.get(i))) {
+                        newRequests.remove(batch.get(i));
+                        System.out.println("Assigned " + batch.get(i).getRideRequestID() + " to " + assigned[i].getVehicleID());
+                        System.out.println(assigned[i].getVehicleID() + " size is " + assigned[i].getRideRequests().size());
+                    }
+                }
+            }
+        }
+
+        // Allocates ride request to vehicles based on proximity and available capacity
+        while (!newRequests.isEmpty()) {
+            RideRequest request = newRequests.poll(); // Get the next ride request
+            // Find the closest vehicle with available capacity
+            Vehicle assignedVehicle = engine.getAvailability().nearestWithFreeSeat(request.getPickUpPoint());
+            if (engine.assign(assignedVehicle, request)) {
+                System.out.println("Assigned " + request.getRideRequestID() + " to " + assignedVehicle.getVehicleID());
+                System.out.println(assignedVehicle.getVehicleID() + " size is " + assignedVehicle.getRideRequests().size());
+            } else {
+                engine.defer(request);
+            }
+        }
+    }
+}
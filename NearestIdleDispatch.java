@@ -0,0 +1,21 @@
+// This class assigns each request to the idle vehicle closest to its pick-up point, so a vehicle serves one request at
+// a time. This is the dispatch of Simulation (heuristic 1).
+
+import java.util.Queue;
+
+public class NearestIdleDispatch implements DispatchPolicy {
+
+    @Override
+    public void allocate(SimulationEngine engine, Queue<RideRequest> newRequests) {
+        while (!newRequests.isEmpty()) {
+            RideRequest request = newRequests.poll(); // Get the next ride request
+            // Find the closest vehicle to the ride request's pick-up point, skipping vehicles that already have a ride request assigned
+            Vehicle assignedVehicle = engine.getAvailability().nearestIdle(request.getPickUpPoint());
+            if (engine.assign(assignedVehicle, request)) {
+                System.out.println("Assigned " + request.getRideRequestID() + " to " + assignedVehicle.getVehicleID());
+            } else {
+                engine.defer(request);
+            }
+        }
+    }
+}
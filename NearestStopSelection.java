@@ -0,0 +1,142 @@
+// This class moves each vehicle towards the closer, as the crow flies, of its nearest drop-off and its nearest pick-up.
+// With a StopSequencer a vehicle instead heads for the first stop of the cheapest order of all its stops, as long as
+// it has no more than the sequencer's maximum. Every vehicle's stop is chosen before any vehicle moves, in parallel
+// for a large fleet. This is the stop selection of SimulationProximity, SimulationNo2 and SimulationEmpty.
+
+public class NearestStopSelection implements StopSelectionPolicy {
+
+    private StopSequencer stopSequencer; // Orders each vehicle's stops exactly when set, instead of heading to the nearest stop
+    private RideRequest[] nearestDropOffs = new RideRequest[0]; // Stops chosen for this time interval, by fleet position
+    private RideRequest[] nearestPickUps = new RideRequest[0];
+
+    public NearestStopSelection(StopSequencer stopSequencer) {
+        //Constructor
+        this.stopSequencer = stopSequencer;
+    }
+
+    // Method to find every moving vehicle's nearest drop-off and pick-up first. A vehicle's choice only depends on its
+    // own position and requests, so this gives the same stops as searching when the vehicle moves.
+    @Override
+    public void beforeMoves(SimulationEngine engine, int[] movers, int count) {
+        Vehicle[] fleet = engine.getFleet();
+        RoutingEngine routingEngine = engine.getRoutingEngine();
+        if (nearestDropOffs.length != fleet.length) {
+            nearestDropOffs = new RideRequest[fleet.length];
+            nearestPickUps = new RideRequest[fleet.length];
+        }
+        if (stopSequencer != null) {
+            routingEngine.prepare(); // The sequencer routes legs from several threads
+        }
+        ParallelScan.forEach(count, engine.getParallelThreshold(), i -> {
+            int v = movers[i];
+            nearestDropOffs[v] = null;
+            nearestPickUps[v] = null;
+            // With a sequencer the next stop is the first of the cheapest order, unless the vehicle has too many stops
+            if (stopSequencer != null) {
+                StopSequencer.Sequence sequence = stopSequencer.solve(fleet[v].getCurrentNode(), fleet[v].getRideRequests(),
+                        fleet[v].getPickedUpRequests(), routingEngine);
+                if (sequence != null) {
+                    if (sequence.isPickUp(0)) {
+                        nearestPickUps[v] = sequence.getRequest(0);
+                    } else {
+                        nearestDropOffs[v] = sequence.getRequest(0);
+                    }
+                    return;
+                }
+            }
+            // If there are requests where passengers are picked up, find the nearest drop-off point
+            if (!fleet[v].getPickedUpRequests().isEmpty()) {
+                nearestDropOffs[v] = findNearestDropOff(fleet[v]);
+            }
+            // If there are still pending requests for pick-up, find the nearest pick-up point
+            if (!fleet[v].getRideRequests().isEmpty()) {
+                nearestPickUps[v] = findNearestRideRequest(fleet[v]);
+            }
+        });
+    }
+
+    // Which way a vehicle goes: 1 to the drop-off as it is closer than the pick-up, 2 to the pick-up as it is at least as
+    // close, 3 to the drop-off as there is no pick-up, 4 to the pick-up as there is no drop-off, 0 if it has no stop
+    private int choose(Vehicle vehicle, int v) {
+        RideRequest nearestDropOff = nearestDropOffs[v];
+        RideRequest nearestPickUp = nearestPickUps[v];
+        if (nearestDropOff != null && nearestPickUp != null) {
+            // Determine whether to prioritize picking up or dropping off based on distance
+            double dropoffDistance = GeoDistance.haversine(vehicle.getCurrentNode(), nearestDropOff.getDropOffPoint());
+            double pickUpDistance = GeoDistance.haversine(vehicle.getCurrentNode(), nearestPickUp.getPickUpPoint());
+            return dropoffDistance < pickUpDistance ? 1 : 2;
+        }
+        return nearestDropOff != null ? 3 : nearestPickUp != null ? 4 : 0;
+    }
+
+    @Override
+    public Node destination(SimulationEngine engine, Vehicle vehicle, int v) {
+        int choice = choose(vehicle, v);
+        if (choice == 0) {
+            return null;
+        }
+        return choice == 1 || choice == 3 ? nearestDropOffs[v].getDropOffPoint() : nearestPickUps[v].getPickUpPoint();
+    }
+
+    @Override
+    public void move(SimulationEngine engine, Vehicle vehicle, int v) {
+        Node currentNode = vehicle.getCurrentNode();
+        RideRequest nearestDropOff = nearestDropOffs[v];
+        RideRequest nearestPickUp = nearestPickUps[v];
+        int choice = choose(vehicle, v);
+        Node destination = destination(engine, vehicle, v);
+        if (choice == 1 || choice == 3) {
+            System.out.println(vehicle.getVehicleID() + " is heading to drop-off point " + destination.getId()+ " for " + nearestDropOff.getRideRequestID());
+            System.out.println(choice);
+        } else if (choice == 2 || choice == 4) {
+            System.out.println(vehicle.getVehicleID() + " is heading to pickup point " + destination.getId()+ " for "+ nearestPickUp.getRideRequestID());
+            System.out.println(choice);
+        }
+
+        // Check if the vehicle has reached its destination
+        if (destination != null && engine.moveTowards(vehicle, destination)) {
+            if (nearestPickUp != null && currentNode.equals(nearestPickUp.getPickUpPoint())) {
+                // Pick up the passenger at the pick-up point
+                engine.pickUp(vehicle, nearestPickUp);
+                System.out.println(vehicle.getVehicleID() + " The list of picked up request size is:"+ vehicle.getPickedUpRequests().size()+ " The list of all ride request size is:"+ vehicle.getRideRequests().size());
+                System.out.println(vehicle.getVehicleID() + " has picked up a passenger at " + destination.getId()+ " for "+ nearestPickUp.getRideRequestID());
+            } else if (nearestDropOff != null && currentNode.equals(nearestDropOff.getDropOffPoint())) {
+                // Drop off the passenger at the drop-off point
+                engine.dropOff(vehicle, nearestDropOff);
+                if (stopSequencer != null) {
+                    stopSequencer.forget(nearestDropOff);
+                }
+                System.out.println(vehicle.getVehicleID() + " has dropped off a passenger at " + destination.getId()+ " for "+ nearestDropOff.getRideRequestID());
+                System.out.println(vehicle.getVehicleID() + " picked up request in dropoff size is "+ vehicle.getPickedUpRequests().size());
+            }
+        }
+    }
+
+    // Find the nearest ride request's pick-up node
+    private static RideRequest findNearestRideRequest(Vehicle vehicle) {
+        RideRequest nearestRequest = null;
+        double shortestDistance = Double.MAX_VALUE;
+        for (RideRequest request : vehicle.getRideRequests()) {
+            double distance = GeoDistance.haversine(vehicle.getCurrentNode(), request.getPickUpPoint());
+            if (distance < shortestDistance) {
+                shortestDistance = distance;
+                nearestRequest = request;
+            }
+        }
+        return nearestRequest;
+    }
+
+    // Find the nearest drop-off node from the picked-up requests
+    private static RideRequest findNearestDropOff(Vehicle vehicle) {
+        RideRequest nearestRequest = null;
+        double shortestDistance = Double.MAX_VALUE;
+        for (RideRequest request : vehicle.getPickedUpRequests()) {
+            double distance = GeoDistance.haversine(vehicle.getCurrentNode(), request.getDropOffPoint());
+            if (distance < shortestDistance) {
+                shortestDistance = distance;
+                nearestRequest = request;
+            }
+        }
+        return nearestRequest;
+    }
+}
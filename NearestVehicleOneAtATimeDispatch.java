@@ -0,0 +1,28 @@
+// This class assigns at most one request per time interval, to the vehicle closest to its pick-up point whether or not
+// that vehicle already has requests. Requests are tried in queue order until one is assigned: a request the nearest
+// vehicle has no room for is dropped, and the requests after the assigned one wait for the next time interval. This is
+// the dispatch of SimulationRun.
+
+import java.util.Queue;
+
+public class NearestVehicleOneAtATimeDispatch implements DispatchPolicy {
+
+    @Override
+    public void allocate(SimulationEngine engine, Queue<RideRequest> newRequests) {
+        while (!newRequests.isEmpty()) {
+            RideRequest request = newRequests.poll(); // Get the next ride request
+            // Find the closest vehicle to the ride request's pick-up point
+            Vehicle assignedVehicle = engine.getVehicleIndex().nearest(request.getPickUpPoint(), vehicle -> true);
+            if (engine.assign(assignedVehicle, request)) {
+                System.out.println("Assigned " + request.getRideRequestID() + " to " + assignedVehicle.getVehicleID());
+                break;
+            } else {
+                System.out.println("No available vehicle for Ride Request.");
+            }
+        }
+        // Only one request is assigned per time interval, the rest are tried again in the next one
+        for (RideRequest request : newRequests) {
+            engine.postpone(request);
+        }
+    }
+}
@@ -6,11 +6,23 @@ public class Node {
     private double latitude;  // Latitude of the node
     private double longitude; // Longitude of the node
 
+    // Derived from latitude and longitude once, so distance estimates do not redo the trigonometry on every call
+    private double latitudeRadians;
+    private double longitudeRadians;
+    private double cosLatitude;
+    private double unitX; // Position on the unit sphere
+    private double unitY;
+    private double unitZ;
+
+    private NodeRegistry registry; // Registry that assigned index, null until the node is added to a graph
+    private int index = -1;        // Dense index of the node in that registry
+
     // Constructor with latitude and longitude
     public Node(String id, double latitude, double longitude) {
         this.id = id;
         this.latitude = latitude;
         this.longitude = longitude;
+        updateTrigonometry();
     }
 
     // Getter for id
@@ -41,6 +53,7 @@ public class Node {
     // Setter for latitude
     public void setLatitude(double latitude) {
         this.latitude = latitude;
+        updateTrigonometry();
     }
 
     // Getter for longitude
@@ -51,6 +64,58 @@ public class Node {
     // Setter for longitude
     public void setLongitude(double longitude) {
         this.longitude = longitude;
+        updateTrigonometry();
+    }
+
+    // Recompute the cached radians and unit vector after the coordinates change
+    private void updateTrigonometry() {
+        latitudeRadians = Math.toRadians(latitude);
+        longitudeRadians = Math.toRadians(longitude);
+        cosLatitude = Math.cos(latitudeRadians);
+        unitX = cosLatitude * Math.cos(longitudeRadians);
+        unitY = cosLatitude * Math.sin(longitudeRadians);
+        unitZ = Math.sin(latitudeRadians);
+    }
+
+    public double getLatitudeRadians() {
+        return latitudeRadians;
+    }
+
+    public double getLongitudeRadians() {
+        return longitudeRadians;
+    }
+
+    public double getCosLatitude() {
+        return cosLatitude;
+    }
+
+    public double getUnitX() {
+        return unitX;
+    }
+
+    public double getUnitY() {
+        return unitY;
+    }
+
+    public double getUnitZ() {
+        return unitZ;
+    }
+
+    // Getter for the dense index given by the node's registry, -1 if it has not been registered
+    public int getIndex() {
+        return index;
+    }
+
+    public NodeRegistry getRegistry() {
+        return registry;
+    }
+
+    // Called by NodeRegistry, the first registry to intern a node owns its index
+    void assignIndex(NodeRegistry registry, int index) {
+        if (this.registry == null) {
+            this.registry = registry;
+            this.index = index;
+        }
     }
 
     // Override equals and hashCode to ensure proper behavior in collections
@@ -62,4 +127,9 @@ public class Node {
         return id.equals(node.id);
     }
 
+    @Override
+    public int hashCode() {
+        return id.hashCode(); // Consistent with equals, String caches its hash
+    }
+
 }
@@ -0,0 +1,73 @@
+// This class interns the nodes of a graph by id and gives each one a dense int index, 0, 1, 2, ... in the order
+// they were first registered. Two Node objects with the same id map to the same canonical node and index, and
+// array-backed structures (CompactGraph, search workspaces) use the index instead of hashing the String id.
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class NodeRegistry {
+
+    private Map<String, Integer> indexById; // Dense index of each registered id
+    private List<Node> nodes;               // Canonical node of each index
+
+    public NodeRegistry() {
+        //Constructor
+        indexById = new HashMap<>();
+        nodes = new ArrayList<>();
+    }
+
+    // Method to register a node, returns the canonical node for its id (the node itself if the id is new)
+    public Node intern(Node node) {
+        Integer index = indexById.get(node.getId());
+        if (index != null) {
+            return nodes.get(index);
+        }
+        index = nodes.size();
+        indexById.put(node.getId(), index);
+        nodes.add(node);
+        node.assignIndex(this, index);
+        return node;
+    }
+
+    // Method to get the dense index of a node, or -1 if its id was never registered
+    public int indexOf(Node node) {
+        if (node.getRegistry() == this) {
+            return node.getIndex(); // Fast path, no hashing
+        }
+        Integer index = indexById.get(node.getId());
+        return index == null ? -1 : index;
+    }
+
+    // Method to get the dense index registered for an id, or -1
+    public int indexOf(String id) {
+        Integer index = indexById.get(id);
+        return index == null ? -1 : index;
+    }
+
+    // Method to get the canonical node of an index
+    public Node getNode(int index) {
+        return nodes.get(index);
+    }
+
+    // Method to get the canonical node registered under an id, or null
+    public Node getNode(String id) {
+        Integer index = indexById.get(id);
+        return index == null ? null : nodes.get(index);
+    }
+
+    public boolean contains(Node node) {
+        return indexOf(node) >= 0;
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    // Method to get all canonical nodes in index order
+    public List<Node> getNodes() {
+        return Collections.unmodifiableList(nodes);
+    }
+}
@@ -0,0 +1,174 @@
+// This class is a static R-tree bulk loaded with Sort-Tile-Recursive (STR) packing, used for nearest-item queries in the plane.
+// Items are given as bounding boxes. They are sorted into vertical slices by the x of their centers, each slice is
+// sorted by y and cut into runs of NODE_CAPACITY, and each run becomes one leaf; the leaves are packed the same way
+// into the next level up until a single root remains. Every node but the last of each level is full, so the tree is
+// shallow and its boxes barely overlap.
+// A query runs best-first: tree nodes wait in a heap keyed by the squared distance from the query point to their box,
+// and the search stops once the nearest remaining box is farther than the best item found so far. The exact distance
+// to an item is computed by the caller's ItemDistance.
+
+import java.util.Arrays;
+
+public class PackedRTree {
+
+    public static final int NODE_CAPACITY = 16;
+
+    // Squared distance from a query point to an item, must never be less than the distance to the item's box
+    public interface ItemDistance {
+        double squaredDistance(int item, double x, double y);
+    }
+
+    private int leafCount;        // Tree nodes 0 .. leafCount - 1 are leaves, their children are item ids
+    private int root;
+    private double[] minX;        // Bounding box of each tree node
+    private double[] minY;
+    private double[] maxX;
+    private double[] maxY;
+    private int[] firstChild;     // Children of node u are children[firstChild[u] .. firstChild[u + 1] - 1]
+    private int[] children;
+    private ThreadLocal<IndexedMinHeap> queues = new ThreadLocal<>(); // Query heap of each thread
+
+    // Method to bulk load a tree over items with the given boxes
+    public PackedRTree(double[] itemMinX, double[] itemMinY, double[] itemMaxX, double[] itemMaxY) {
+        //Constructor
+        int itemCount = itemMinX.length;
+        // Every level but the top has at most one partly filled node, so this bounds the number of tree nodes
+        int capacity = 2 * ((itemCount + NODE_CAPACITY - 1) / NODE_CAPACITY) + 16;
+        minX = new double[capacity];
+        minY = new double[capacity];
+        maxX = new double[capacity];
+        maxY = new double[capacity];
+        firstChild = new int[capacity + 1];
+        children = new int[itemCount + capacity];
+
+        // Pack the items into leaves
+        int[] entries = new int[itemCount];
+        for (int i = 0; i < itemCount; i++) {
+            entries[i] = i;
+        }
+        int nodeCount = pack(entries, itemMinX, itemMinY, itemMaxX, itemMaxY, 0, 0);
+        leafCount = nodeCount;
+
+        // Pack each level into the next until one node is left
+        int levelStart = 0;
+        while (nodeCount - levelStart > 1) {
+            int levelEnd = nodeCount;
+            int[] level = new int[levelEnd - levelStart];
+            for (int i = 0; i < level.length; i++) {
+                level[i] = levelStart + i;
+            }
+            nodeCount = pack(level, minX, minY, maxX, maxY, nodeCount, firstChild[nodeCount]);
+            levelStart = levelEnd;
+        }
+        root = nodeCount - 1;
+        if (itemCount == 0) {
+            root = -1;
+        }
+    }
+
+    // STR pack the entries (item or tree node ids with the given boxes) into new tree nodes starting at nodeCount
+    private int pack(int[] entries, double[] boxMinX, double[] boxMinY, double[] boxMaxX, double[] boxMaxY, int nodeCount, int childCount) {
+        int n = entries.length;
+        int groups = (n + NODE_CAPACITY - 1) / NODE_CAPACITY;
+        int sliceCount = (int) Math.ceil(Math.sqrt(groups));
+        int sliceSize = sliceCount * NODE_CAPACITY;
+        sortByCenter(entries, 0, n, boxMinX, boxMaxX);
+        for (int sliceStart = 0; sliceStart < n; sliceStart += sliceSize) {
+            int sliceEnd = Math.min(n, sliceStart + sliceSize);
+            sortByCenter(entries, sliceStart, sliceEnd, boxMinY, boxMaxY);
+            for (int start = sliceStart; start < sliceEnd; start += NODE_CAPACITY) {
+                int end = Math.min(sliceEnd, start + NODE_CAPACITY);
+                int node = nodeCount++;
+                minX[node] = Double.POSITIVE_INFINITY;
+                minY[node] = Double.POSITIVE_INFINITY;
+                maxX[node] = Double.NEGATIVE_INFINITY;
+                maxY[node] = Double.NEGATIVE_INFINITY;
+                firstChild[node] = childCount;
+                for (int i = start; i < end; i++) {
+                    int entry = entries[i];
+                    children[childCount++] = entry;
+                    minX[node] = Math.min(minX[node], boxMinX[entry]);
+                    minY[node] = Math.min(minY[node], boxMinY[entry]);
+                    maxX[node] = Math.max(maxX[node], boxMaxX[entry]);
+                    maxY[node] = Math.max(maxY[node], boxMaxY[entry]);
+                }
+                firstChild[node + 1] = childCount;
+            }
+        }
+        return nodeCount;
+    }
+
+    // Sort entries[from .. to) by the center of their boxes along one axis, through primitive longs rather than boxed Integers:
+    // the high half of each long is the center as an order-preserving float, the low half the position of the entry
+    private static void sortByCenter(int[] entries, int from, int to, double[] boxMin, double[] boxMax) {
+        long[] keys = new long[to - from];
+        int[] original = Arrays.copyOfRange(entries, from, to);
+        for (int i = 0; i < keys.length; i++) {
+            int entry = original[i];
+            int bits = Float.floatToIntBits((float) ((boxMin[entry] + boxMax[entry]) / 2));
+            bits = bits < 0 ? ~bits : bits | 0x80000000; // Order-preserving as unsigned
+            keys[i] = ((long) (bits ^ 0x80000000) << 32) | i; // Flip back so signed long comparison keeps the order
+        }
+        Arrays.sort(keys);
+        for (int i = 0; i < keys.length; i++) {
+            entries[from + i] = original[(int) keys[i]];
+        }
+    }
+
+    // Method to get the item nearest to (x, y) by the given distance, or -1 if the tree is empty.
+    // Ties go to the lowest item id. bestDistance[0] receives the squared distance when it is not null.
+    public int nearest(double x, double y, ItemDistance distance, double[] bestDistance) {
+        if (root < 0) {
+            return -1;
+        }
+        IndexedMinHeap queue = queue();
+        queue.clear();
+        queue.insertOrDecrease(root, boxDistance(root, x, y));
+        double best = Double.POSITIVE_INFINITY;
+        int bestItem = -1;
+        while (!queue.isEmpty()) {
+            int node = queue.peek();
+            if (queue.getKey(node) > best) break; // Every remaining box is farther than the best item
+            queue.poll();
+            for (int i = firstChild[node]; i < firstChild[node + 1]; i++) {
+                int child = children[i];
+                if (node < leafCount) {
+                    double d = distance.squaredDistance(child, x, y);
+                    if (d < best || (d == best && child < bestItem)) {
+                        best = d;
+                        bestItem = child;
+                    }
+                } else {
+                    double d = boxDistance(child, x, y);
+                    if (d <= best) {
+                        queue.insertOrDecrease(child, d);
+                    }
+                }
+            }
+        }
+        if (bestDistance != null) {
+            bestDistance[0] = best;
+        }
+        return bestItem;
+    }
+
+    // Squared distance from (x, y) to the box of a tree node, 0 inside the box
+    private double boxDistance(int node, double x, double y) {
+        double dx = x < minX[node] ? minX[node] - x : (x > maxX[node] ? x - maxX[node] : 0.0);
+        double dy = y < minY[node] ? minY[node] - y : (y > maxY[node] ? y - maxY[node] : 0.0);
+        return dx * dx + dy * dy;
+    }
+
+    private IndexedMinHeap queue() {
+        IndexedMinHeap queue = queues.get();
+        if (queue == null) {
+            queue = new IndexedMinHeap(Math.max(1, root + 1));
+            queues.set(queue);
+        }
+        return queue;
+    }
+
+    public int getNodeCount() {
+        return root + 1;
+    }
+}
@@ -0,0 +1,134 @@
+// This class runs per-item work over an index range on the common ForkJoin pool, for loops over the fleet that are
+// too long to run on one thread. Ranges are split in halves down to a chunk size. Below a threshold, or with a single
+// worker, the work runs on the calling thread.
+// Results never depend on how the range was split: forEach writes one slot per index, and argMin keeps the lowest
+// index among equal scores, which is what a sequential loop keeping the first strictly smaller score returns.
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntConsumer;
+import java.util.function.IntToDoubleFunction;
+
+public class ParallelScan {
+
+    public static final int DEFAULT_THRESHOLD = 2048; // Fleet size below which a per-vehicle loop is not worth splitting
+
+    private ParallelScan() {
+        //Static methods only
+    }
+
+    // Method to run action for every index in [0, count), in parallel when count reaches the threshold.
+    // The action must only write state that belongs to its own index.
+    public static void forEach(int count, int threshold, IntConsumer action) {
+        if (!parallel(count, threshold)) {
+            for (int i = 0; i < count; i++) {
+                action.accept(i);
+            }
+            return;
+        }
+        ForkJoinPool.commonPool().invoke(new ForEachTask(action, 0, count, chunkSize(count)));
+    }
+
+    // Method to get the index in [0, count) with the smallest score, or -1 if every score is infinite or NaN
+    // (the way to leave an item out). Ties go to the lowest index.
+    public static int argMin(int count, int threshold, IntToDoubleFunction score) {
+        if (!parallel(count, threshold)) {
+            return scan(score, 0, count);
+        }
+        return ForkJoinPool.commonPool().invoke(new ArgMinTask(score, 0, count, chunkSize(count)));
+    }
+
+    private static boolean parallel(int count, int threshold) {
+        return count >= threshold && count > 1 && ForkJoinPool.getCommonPoolParallelism() > 1;
+    }
+
+    // Four chunks per worker, so a slow chunk does not hold up the whole range
+    private static int chunkSize(int count) {
+        return Math.max(1, count / (4 * ForkJoinPool.getCommonPoolParallelism()));
+    }
+
+    private static int scan(IntToDoubleFunction score, int from, int to) {
+        int best = -1;
+        double bestScore = Double.POSITIVE_INFINITY;
+        for (int i = from; i < to; i++) {
+            double value = score.applyAsDouble(i);
+            if (value < bestScore) {
+                bestScore = value;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    private static class ForEachTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private IntConsumer action;
+        private int from;
+        private int to;
+        private int chunk;
+
+        ForEachTask(IntConsumer action, int from, int to, int chunk) {
+            this.action = action;
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= chunk) {
+                for (int i = from; i < to; i++) {
+                    action.accept(i);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new ForEachTask(action, from, middle, chunk), new ForEachTask(action, middle, to, chunk));
+        }
+    }
+
+    private static class ArgMinTask extends RecursiveTask<Integer> {
+
+        private static final long serialVersionUID = 1L;
+
+        private IntToDoubleFunction score;
+        private int from;
+        private int to;
+        private int chunk;
+        private double bestScore = Double.POSITIVE_INFINITY; // Score of the index compute returned
+
+        ArgMinTask(IntToDoubleFunction score, int from, int to, int chunk) {
+            this.score = score;
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+        }
+
+        @Override
+        protected Integer compute() {
+            if (to - from <= chunk) {
+                int best = scan(score, from, to);
+                if (best >= 0) {
+                    bestScore = score.applyAsDouble(best);
+                }
+                return best;
+            }
+            int middle = (from + to) >>> 1;
+            ArgMinTask left = new ArgMinTask(score, from, middle, chunk);
+            ArgMinTask right = new ArgMinTask(score, middle, to, chunk);
+            left.fork();
+            int rightBest = right.compute();
+            int leftBest = left.join();
+            // The left half holds the lower indices, so it wins ties
+            if (rightBest >= 0 && (leftBest < 0 || right.bestScore < left.bestScore)) {
+                bestScore = right.bestScore;
+                return rightBest;
+            }
+            bestScore = left.bestScore;
+            return leftBest;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+// This class holds the ride requests that have not entered a simulation yet, in one bucket per time interval, so a
+// tick takes its arrivals without scanning every pending request. Buckets live in an array indexed by time interval
+// from the earliest one seen, grown at either end as needed. Within a bucket requests keep the order they were added
+// in, which is the order a queue scanned from the front would give them. A bit set marks the buckets that hold
+// requests, so the next time interval with requests is found 64 buckets at a time rather than bucket by bucket.
+// A request whose time interval is never released stays pending, as it would in a queue.
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+public class RequestCalendar {
+
+    private List<RideRequest>[] buckets; // Bucket k holds the requests of time interval firstTime + k, null if none
+    private int firstTime;               // Time interval of bucket 0
+    private int size;                    // Requests in all buckets
+    private BitSet filled = new BitSet(); // Bit k is set while bucket k holds requests
+
+    @SuppressWarnings("unchecked")
+    public RequestCalendar() {
+        //Constructor
+        this.buckets = (List<RideRequest>[]) new List<?>[16];
+    }
+
+    // Constructor to file a whole queue of requests, in queue order
+    public RequestCalendar(Collection<RideRequest> requests) {
+        this();
+        for (RideRequest request : requests) {
+            add(request);
+        }
+    }
+
+    // Method to file a request under its time interval
+    public void add(RideRequest request) {
+        int slot = slotFor(request.getTimeInterval());
+        if (buckets[slot] == null) {
+            buckets[slot] = new ArrayList<>();
+            filled.set(slot);
+        }
+        buckets[slot].add(request);
+        size++;
+    }
+
+    // Method to take out the requests of a time interval, in the order they were added
+    public List<RideRequest> release(int time) {
+        int slot = time - firstTime;
+        if (size == 0 || slot < 0 || slot >= buckets.length || buckets[slot] == null) {
+            return Collections.emptyList();
+        }
+        List<RideRequest> released = buckets[slot];
+        buckets[slot] = null;
+        filled.clear(slot);
+        size -= released.size();
+        return released;
+    }
+
+    // Method to move a request that could not be served to a later time interval, behind the requests already there
+    public void defer(RideRequest request, int time) {
+        request.setTimeInterval(time);
+        add(request);
+    }
+
+    // Method to get the earliest time interval from the given one on that has requests, Integer.MAX_VALUE if none has
+    public int nextTime(int from) {
+        if (size == 0) {
+            return Integer.MAX_VALUE;
+        }
+        int slot = filled.nextSetBit(Math.max(from - firstTime, 0));
+        return slot < 0 ? Integer.MAX_VALUE : firstTime + slot;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Slot of a time interval's bucket, growing the array to cover it
+    @SuppressWarnings("unchecked")
+    private int slotFor(int time) {
+        if (size == 0 && time - firstTime >= buckets.length) {
+            // Nothing is pending, so the buckets can start over at this time
+            Arrays.fill(buckets, null);
+            filled.clear();
+            firstTime = time;
+        }
+        if (time < firstTime) {
+            // Shift the buckets up to make room in front, at least doubling so repeated early times stay cheap
+            int shift = Math.max(firstTime - time, buckets.length);
+            List<RideRequest>[] grown = (List<RideRequest>[]) new List<?>[buckets.length + shift];
+            System.arraycopy(buckets, 0, grown, shift, buckets.length);
+            BitSet shifted = new BitSet(grown.length);
+            for (int slot = filled.nextSetBit(0); slot >= 0; slot = filled.nextSetBit(slot + 1)) {
+                shifted.set(slot + shift);
+            }
+            buckets = grown;
+            filled = shifted;
+            firstTime -= shift;
+        } else if (time - firstTime >= buckets.length) {
+            buckets = Arrays.copyOf(buckets, Math.max(buckets.length * 2, time - firstTime + 1));
+        }
+        return time - firstTime;
+    }
+}
@@ -0,0 +1,46 @@
+// This interface is the read-only view of a road network that the routing algorithms run on.
+// Nodes are dense ids 0 .. getNodeCount() - 1 and the outgoing edges of a node are the edge indices
+// firstEdge(node) .. endEdge(node) - 1. CompactGraph keeps the arrays on the heap, GraphSnapshot reads them in place
+// from a memory-mapped file.
+public interface RoadNetwork {
+
+    int getNodeCount();
+
+    // Number of directed edges, an undirected road counts twice
+    int getEdgeCount();
+
+    // Index of the first outgoing edge of a node
+    int firstEdge(int node);
+
+    // Index one past the last outgoing edge of a node
+    int endEdge(int node);
+
+    int getTarget(int edge);
+
+    double getWeight(int edge);
+
+    // Index of the first incoming edge of a node in the reverse adjacency
+    int firstInEdge(int node);
+
+    // Index one past the last incoming edge of a node in the reverse adjacency
+    int endInEdge(int node);
+
+    // Forward edge index of the i-th entry of the reverse adjacency, use getSource/getWeight on the result
+    int getInEdge(int index);
+
+    int getSource(int edge);
+
+    double getLatitude(int node);
+
+    double getLongitude(int node);
+
+    // Method to get the node with a dense id
+    Node getNode(int node);
+
+    // Method to get the dense id of a node, or -1 if it is not part of this network
+    int indexOf(Node node);
+
+    // Method to get a checksum of the topology and weights, used to tell whether files derived from the network are stale
+    long fingerprint();
+
+}
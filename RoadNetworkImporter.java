@@ -0,0 +1,214 @@
+// This class streams a road network from a node file and an edge file into a Graph or straight into a CompactGraph.
+// Node file lines are   id,latitude,longitude
+// Edge file lines are   from,to[,weight[,oneway]]
+// A header line, blank lines and lines starting with # are skipped. A missing or empty weight is filled in with the
+// great-circle distance in km between the two nodes. Roads are two-way unless oneway is 1, true or yes.
+// Nodes are deduplicated by id (the first line wins) and edges to unknown nodes are skipped and counted.
+// Files are read line by line through a large buffer, so memory stays bounded by the network being built. The compact
+// form reads the edge file twice, once to count each node's edges and once to write them into their CSR slots, so no
+// edge list or Edge objects are ever held.
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+public class RoadNetworkImporter {
+
+    private static final int BUFFER_CHARS = 1 << 20;
+
+    private long nodeLines;        // Node lines read
+    private long duplicateNodes;   // Node lines whose id was already seen
+    private long edgeLines;        // Edge lines read
+    private long unknownNodeEdges; // Edge lines skipped because an end node is not in the node file
+    private long computedWeights;  // Edges whose weight was computed from the coordinates
+    private long malformedNodeLines; // Node lines that could not be parsed
+    private long malformedEdgeLines; // Edge lines that could not be parsed
+
+    // Receives each accepted edge line
+    private interface EdgeVisitor {
+        void edge(int from, int to, double weight, boolean oneway);
+    }
+
+    // Method to read the files into a Graph
+    public Graph readGraph(File nodeFile, File edgeFile) throws IOException {
+        NodeRegistry registry = readNodes(nodeFile);
+        Graph graph = new Graph();
+        for (Node node : registry.getNodes()) {
+            graph.addNode(node);
+        }
+        readEdges(edgeFile, registry, (from, to, weight, oneway) -> {
+            if (oneway) {
+                graph.addDirectedEdge(registry.getNode(from), registry.getNode(to), weight);
+            } else {
+                graph.addEdge(registry.getNode(from), registry.getNode(to), weight);
+            }
+        });
+        return graph;
+    }
+
+    // Method to read the files straight into the compact form, edges come out in the same order as readGraph followed by CompactGraph.fromGraph
+    public CompactGraph readCompactGraph(File nodeFile, File edgeFile) throws IOException {
+        NodeRegistry registry = readNodes(nodeFile);
+        int n = registry.size();
+
+        // First pass: count the edges leaving each node
+        int[] offsets = new int[n + 1];
+        readEdges(edgeFile, registry, (from, to, weight, oneway) -> {
+            offsets[from + 1]++;
+            if (!oneway) offsets[to + 1]++;
+        });
+        for (int i = 0; i < n; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+
+        // Second pass: write every edge into the next free slot of its node
+        int[] targets = new int[offsets[n]];
+        double[] weights = new double[targets.length];
+        int[] fill = new int[n];
+        System.arraycopy(offsets, 0, fill, 0, n);
+        readEdges(edgeFile, registry, (from, to, weight, oneway) -> {
+            targets[fill[from]] = to;
+            weights[fill[from]++] = weight;
+            if (!oneway) {
+                targets[fill[to]] = from;
+                weights[fill[to]++] = weight;
+            }
+        });
+        return CompactGraph.fromArrays(registry, offsets, targets, weights);
+    }
+
+    private NodeRegistry readNodes(File nodeFile) throws IOException {
+        nodeLines = 0;
+        duplicateNodes = 0;
+        malformedNodeLines = 0;
+        NodeRegistry registry = new NodeRegistry();
+        String[] fields = new String[3];
+        try (BufferedReader reader = open(nodeFile)) {
+            boolean first = true;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (skip(line)) continue;
+                boolean header = first;
+                first = false;
+                if (split(line, fields) < 3) {
+                    malformedNodeLines++;
+                    continue;
+                }
+                double latitude;
+                double longitude;
+                try {
+                    latitude = Double.parseDouble(fields[1]);
+                    longitude = Double.parseDouble(fields[2]);
+                } catch (NumberFormatException e) {
+                    if (!header) malformedNodeLines++; // A first line that is not numeric is the header
+                    continue;
+                }
+                nodeLines++;
+                if (registry.indexOf(fields[0]) >= 0) {
+                    duplicateNodes++;
+                    continue;
+                }
+                registry.intern(new Node(fields[0], latitude, longitude));
+            }
+        }
+        return registry;
+    }
+
+    private void readEdges(File edgeFile, NodeRegistry registry, EdgeVisitor visitor) throws IOException {
+        edgeLines = 0;
+        unknownNodeEdges = 0;
+        computedWeights = 0;
+        malformedEdgeLines = 0;
+        String[] fields = new String[4];
+        try (BufferedReader reader = open(edgeFile)) {
+            boolean first = true;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (skip(line)) continue;
+                boolean header = first;
+                first = false;
+                int count = split(line, fields);
+                if (count < 2) {
+                    malformedEdgeLines++;
+                    continue;
+                }
+                double weight = Double.NaN;
+                if (count >= 3 && !fields[2].isEmpty()) {
+                    try {
+                        weight = Double.parseDouble(fields[2]);
+                    } catch (NumberFormatException e) {
+                        if (!header) malformedEdgeLines++; // A first line with a non-numeric weight is the header
+                        continue;
+                    }
+                }
+                int from = registry.indexOf(fields[0]);
+                int to = registry.indexOf(fields[1]);
+                if (from < 0 || to < 0) {
+                    if (!header) unknownNodeEdges++;
+                    continue;
+                }
+                edgeLines++;
+                if (Double.isNaN(weight)) {
+                    weight = GeoDistance.haversine(registry.getNode(from), registry.getNode(to));
+                    computedWeights++;
+                }
+                boolean oneway = count >= 4 && isTrue(fields[3]);
+                visitor.edge(from, to, weight, oneway);
+            }
+        }
+    }
+
+    private static BufferedReader open(File file) throws IOException {
+        return new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8), BUFFER_CHARS);
+    }
+
+    private static boolean skip(String line) {
+        return line.isEmpty() || line.charAt(0) == '#' || line.trim().isEmpty();
+    }
+
+    // Split a line on commas into at most fields.length trimmed fields, returns how many were found
+    private static int split(String line, String[] fields) {
+        int count = 0;
+        int start = 0;
+        while (count < fields.length) {
+            int comma = line.indexOf(',', start);
+            int end = comma < 0 ? line.length() : comma;
+            fields[count++] = line.substring(start, end).trim();
+            if (comma < 0) break;
+            start = comma + 1;
+        }
+        return count;
+    }
+
+    private static boolean isTrue(String value) {
+        return value.equals("1") || value.equalsIgnoreCase("true") || value.equalsIgnoreCase("yes");
+    }
+
+    public long getNodeLineCount() {
+        return nodeLines;
+    }
+
+    public long getDuplicateNodeCount() {
+        return duplicateNodes;
+    }
+
+    public long getEdgeLineCount() {
+        return edgeLines;
+    }
+
+    public long getUnknownNodeEdgeCount() {
+        return unknownNodeEdges;
+    }
+
+    public long getComputedWeightCount() {
+        return computedWeights;
+    }
+
+    // Lines of either file that could not be parsed
+    public long getMalformedLineCount() {
+        return malformedNodeLines + malformedEdgeLines;
+    }
+}
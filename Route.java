@@ -1,26 +1,83 @@
 //This class represents the nodes and edges forming a path for a vehicle.
+//A planned route also remembers its destination, the graph version it was planned on and a cursor to the next edge,
+//so a vehicle can follow it hop by hop instead of searching again every time interval.
 import java.util.List;
 
 public class Route {
 	
     private List<Edge> edges; //List of edges in the route.
+    private Node destination; //Node the route was planned to, null if unknown.
+    private int graphVersion; //Graph version the route was planned on.
+    private int cursor; //Index of the next edge to travel.
 
     public Route(List<Edge> edges) {
     	//Constructor
         this.edges = edges;
+        this.graphVersion = -1;
+    }
+
+    public Route(List<Edge> edges, Node destination, int graphVersion) {
+        this(edges);
+        this.destination = destination;
+        this.graphVersion = graphVersion;
     }
 
     public double getRouteCost() {
         return edges.stream().mapToDouble(Edge::getWeight).sum(); //Calculates and returns the total cost of the route by summing the weights of all edges.
     }
 
+    public double getRemainingCost() {
+        double cost = 0;
+        for (int i = cursor; i < edges.size(); i++) {
+            cost += edges.get(i).getWeight(); //Only the edges not travelled yet.
+        }
+        return cost;
+    }
+
+    public boolean isFinished() {
+        return cursor >= edges.size();
+    }
+
+    public Node getNextNode() {
+        //End of the next edge, or null once the route has been travelled.
+        return isFinished() ? null : edges.get(cursor).getEdgeEnd();
+    }
+
+    public Edge getNextEdge() {
+        //Next edge to travel, or null once the route has been travelled.
+        return isFinished() ? null : edges.get(cursor);
+    }
+
+    public Node getPositionNode() {
+        //Node the route expects the vehicle to be at.
+        return isFinished() ? destination : edges.get(cursor).getEdgeStart();
+    }
+
+    public void advance() {
+        if (!isFinished()) {
+            cursor++;
+        }
+    }
+
+    public int getCursor() {
+        return cursor;
+    }
+
 	public List<Edge> getEdges() {
 		return edges;
 	}
 
 	public void setEdges(List<Edge> edges) {
 		this.edges = edges;
+		this.cursor = 0;
+	}
+
+	public Node getDestination() {
+		return destination;
 	}
 
+	public int getGraphVersion() {
+		return graphVersion;
+	}
 
 }
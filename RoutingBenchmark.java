@@ -0,0 +1,341 @@
+// This class benchmarks the routing code on a synthetic grid road network around Cape Town.
+// Run with: java RoutingBenchmark [gridSize] [queries]
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class RoutingBenchmark {
+
+    // Method to build a gridSize x gridSize street grid with randomly slower streets
+    public static Graph buildGridGraph(int gridSize, long seed) {
+        Random random = new Random(seed);
+        Graph graph = new Graph();
+        Node[][] grid = new Node[gridSize][gridSize];
+        for (int row = 0; row < gridSize; row++) {
+            for (int col = 0; col < gridSize; col++) {
+                // Roughly 200m between intersections
+                grid[row][col] = new Node("G" + row + "_" + col, -33.9249 - row * 0.0018, 18.4241 + col * 0.0022);
+                graph.addNode(grid[row][col]);
+            }
+        }
+        RoutingEngine engine = new RoutingEngine(graph);
+        for (int row = 0; row < gridSize; row++) {
+            for (int col = 0; col < gridSize; col++) {
+                // Weights are the straight-line distance stretched by up to 3x, so the haversine heuristic stays admissible
+                if (col + 1 < gridSize) {
+                    double km = engine.calculateHeuristic(grid[row][col], grid[row][col + 1]);
+                    graph.addEdge(grid[row][col], grid[row][col + 1], km * (1.0 + 2.0 * random.nextDouble()));
+                }
+                if (row + 1 < gridSize) {
+                    double km = engine.calculateHeuristic(grid[row][col], grid[row + 1][col]);
+                    graph.addEdge(grid[row][col], grid[row + 1][col], km * (1.0 + 2.0 * random.nextDouble()));
+                }
+            }
+        }
+        return graph;
+    }
+
+    // Method to pick random (start, stop) pairs from the graph
+    public static List<Node[]> randomQueries(Graph graph, int count, long seed) {
+        Random random = new Random(seed);
+        List<Node> nodes = graph.getNodes();
+        List<Node[]> queries = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            queries.add(new Node[] { nodes.get(random.nextInt(nodes.size())), nodes.get(random.nextInt(nodes.size())) });
+        }
+        return queries;
+    }
+
+    // Method to get the total weight of a path returned by the routing engine
+    public static double pathCost(Graph graph, Node start, List<Node> path) {
+        double cost = 0;
+        Node previous = start;
+        for (Node node : path) {
+            cost += graph.getEdgeWeight(previous, node);
+            previous = node;
+        }
+        return cost;
+    }
+
+    // Method to measure the heap used by a freshly built object graph and by its compact form
+    private static void compareMemory(int gridSize) {
+        long before = usedHeap();
+        Graph graph = buildGridGraph(gridSize, 42);
+        long graphBytes = usedHeap() - before;
+        before = usedHeap();
+        CompactGraph compactGraph = CompactGraph.fromGraph(graph);
+        long compactBytes = usedHeap() - before;
+        System.out.println("Graph heap: " + graphBytes / 1024 + " KB, CompactGraph heap: " + compactBytes / 1024
+                + " KB (" + compactGraph.estimateArrayBytes() / 1024 + " KB in primitive arrays) for "
+                + graph.getNodes().size() + " nodes"); // Keeps the graph reachable until both measurements are taken
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    // Method to report the preprocessing cost of the contraction hierarchy and how many queries it takes to pay off
+    private static void timeContractionHierarchy(Graph graph, List<Node[]> queries, double[] costs) {
+        RoutingEngine heapEngine = new RoutingEngine(graph);
+        RoadNetwork network = heapEngine.getNetwork();
+        long started = System.nanoTime();
+        for (Node[] query : queries) {
+            heapEngine.nextHop(network.indexOf(query[0]), network.indexOf(query[1]));
+        }
+        double heapMillis = (System.nanoTime() - started) / 1e6 / queries.size();
+
+        ContractionHierarchy hierarchy = ContractionHierarchy.build(network);
+        double preprocessingMillis = hierarchy.getPreprocessingNanos() / 1e6;
+        long settled = 0;
+        for (int i = 0; i < queries.size(); i++) {
+            double distance = hierarchy.distance(network.indexOf(queries.get(i)[0]), network.indexOf(queries.get(i)[1]));
+            settled += hierarchy.getLastSettledCount();
+            if (Math.abs(costs[i] - distance) > 1e-9) {
+                System.out.println("Mismatch for query " + i + ": " + costs[i] + " vs " + distance);
+            }
+        }
+        started = System.nanoTime();
+        for (Node[] query : queries) {
+            hierarchy.nextHop(network.indexOf(query[0]), network.indexOf(query[1]));
+        }
+        double queryMillis = (System.nanoTime() - started) / 1e6 / queries.size();
+
+        System.out.printf("%-22s %10.3f ms/query %10.1f settled/query%n", "CH", queryMillis, (double) settled / queries.size());
+        String payoff = heapMillis > queryMillis ? String.format("%.0f", Math.ceil(preprocessingMillis / (heapMillis - queryMillis))) : "n/a";
+        System.out.printf("CH preprocessing %.1f ms, %d shortcuts, pays off after %s next-hop queries (heap A* %.3f ms/query)%n",
+                preprocessingMillis, hierarchy.getShortcutCount(), payoff, heapMillis);
+    }
+
+    // Method to compare the landmark heuristic against haversine on the heap search, including the table cache on disk
+    private static void timeLandmarks(Graph graph, List<Node[]> queries, double[] costs) {
+        try {
+            File tableFile = File.createTempFile("landmarks", ".alt");
+            tableFile.delete();
+            RoutingEngine engine = new RoutingEngine(graph);
+            long started = System.nanoTime();
+            engine.useLandmarkHeuristic(8, tableFile);
+            engine.getHeuristic();
+            double buildMillis = (System.nanoTime() - started) / 1e6;
+
+            RoutingEngine reloaded = new RoutingEngine(graph);
+            started = System.nanoTime();
+            reloaded.useLandmarkHeuristic(8, tableFile);
+            reloaded.getHeuristic();
+            double loadMillis = (System.nanoTime() - started) / 1e6;
+            System.out.printf("Landmark tables: %.1f ms to build, %.1f ms to load from disk%n", buildMillis, loadMillis);
+            tableFile.delete();
+
+            long settled = 0;
+            started = System.nanoTime();
+            for (int i = 0; i < queries.size(); i++) {
+                List<Node> path = reloaded.findPath(queries.get(i)[0], queries.get(i)[1]);
+                settled += reloaded.getLastSettledCount();
+                double cost = pathCost(graph, queries.get(i)[0], path);
+                if (Math.abs(costs[i] - cost) > 1e-9) {
+                    System.out.println("Mismatch for query " + i + ": " + costs[i] + " vs " + cost);
+                }
+            }
+            double millis = (System.nanoTime() - started) / 1e6;
+            System.out.printf("%-22s %10.3f ms/query %10.1f settled/query%n", "ALT", millis / queries.size(), (double) settled / queries.size());
+        } catch (IOException e) {
+            System.out.println("Could not create landmark table file: " + e.getMessage());
+        }
+    }
+
+    // Method to time writing and opening a memory-mapped snapshot, and check that routing on it gives the same costs
+    private static void timeSnapshot(Graph graph, List<Node[]> queries, double[] costs) {
+        try {
+            File snapshotFile = File.createTempFile("network", ".rns");
+            long started = System.nanoTime();
+            GraphSnapshot.write(CompactGraph.fromGraph(graph), snapshotFile);
+            double writeMillis = (System.nanoTime() - started) / 1e6;
+            started = System.nanoTime();
+            GraphSnapshot snapshot = GraphSnapshot.open(snapshotFile);
+            double openMillis = (System.nanoTime() - started) / 1e6;
+            System.out.printf("Snapshot: %d KB, %.1f ms to write, %.3f ms to open%n", snapshotFile.length() / 1024, writeMillis, openMillis);
+
+            RoutingEngine engine = new RoutingEngine(snapshot);
+            long settled = 0;
+            started = System.nanoTime();
+            for (int i = 0; i < queries.size(); i++) {
+                List<Node> path = engine.findPath(queries.get(i)[0], queries.get(i)[1]);
+                settled += engine.getLastSettledCount();
+                double cost = pathCost(graph, queries.get(i)[0], path);
+                if (Math.abs(costs[i] - cost) > 1e-9) {
+                    System.out.println("Mismatch for query " + i + ": " + costs[i] + " vs " + cost);
+                }
+            }
+            double millis = (System.nanoTime() - started) / 1e6;
+            System.out.printf("%-22s %10.3f ms/query %10.1f settled/query%n", "SNAPSHOT", millis / queries.size(), (double) settled / queries.size());
+            snapshotFile.delete();
+        } catch (IOException e) {
+            System.out.println("Could not write or open the snapshot: " + e.getMessage());
+        }
+    }
+
+    // Method to time importing the graph from node and edge files, in both forms, and check the routes on the result
+    private static void timeImport(Graph graph, List<Node[]> queries, double[] costs) {
+        try {
+            File nodeFile = File.createTempFile("nodes", ".csv");
+            File edgeFile = File.createTempFile("edges", ".csv");
+            try (PrintWriter nodes = new PrintWriter(nodeFile, "UTF-8"); PrintWriter edges = new PrintWriter(edgeFile, "UTF-8")) {
+                nodes.println("id,latitude,longitude");
+                edges.println("from,to,weight,oneway");
+                List<Node> graphNodes = graph.getNodes();
+                for (Node node : graphNodes) {
+                    nodes.println(node.getId() + "," + node.getLatitude() + "," + node.getLongitude());
+                    for (Edge edge : graph.getEdges(node)) {
+                        // Each road is stored in both adjacency lists, write it once from the node added first
+                        if (graph.getNodeRegistry().indexOf(edge.getEdgeEnd()) > graph.getNodeRegistry().indexOf(node)) {
+                            edges.println(node.getId() + "," + edge.getEdgeEnd().getId() + "," + edge.getWeight() + ",0");
+                        }
+                    }
+                }
+            }
+
+            RoadNetworkImporter importer = new RoadNetworkImporter();
+            long started = System.nanoTime();
+            Graph imported = importer.readGraph(nodeFile, edgeFile);
+            double graphMillis = (System.nanoTime() - started) / 1e6;
+            started = System.nanoTime();
+            CompactGraph compact = importer.readCompactGraph(nodeFile, edgeFile);
+            double compactMillis = (System.nanoTime() - started) / 1e6;
+            System.out.printf("Import of %d edge lines: %.1f ms into a Graph, %.1f ms into a CompactGraph%s%n",
+                    importer.getEdgeLineCount(), graphMillis, compactMillis,
+                    CompactGraph.fromGraph(imported).fingerprint() == compact.fingerprint() ? "" : " (the two forms differ)");
+            nodeFile.delete();
+            edgeFile.delete();
+
+            RoutingEngine engine = new RoutingEngine(compact);
+            for (int i = 0; i < queries.size(); i++) {
+                double cost = pathCost(graph, queries.get(i)[0], engine.findPath(queries.get(i)[0], queries.get(i)[1]));
+                if (Math.abs(costs[i] - cost) > 1e-9) {
+                    System.out.println("Mismatch for query " + i + ": " + costs[i] + " vs " + cost);
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Could not write or import the network files: " + e.getMessage());
+        }
+    }
+
+    // Method to check that steady-state next-hop queries allocate nothing, measured with the per-thread allocation counter
+    private static void checkAllocations(Graph graph, List<Node[]> queries) {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            System.out.println("Allocation counter not available on this JVM");
+            return;
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        for (RoutingEngine.SearchMode mode : new RoutingEngine.SearchMode[] {
+                RoutingEngine.SearchMode.BINARY_HEAP, RoutingEngine.SearchMode.BIDIRECTIONAL_A_STAR, RoutingEngine.SearchMode.CONTRACTION_HIERARCHY }) {
+            RoutingEngine engine = new RoutingEngine(graph, mode);
+            RoadNetwork network = engine.getNetwork();
+            int[] starts = new int[queries.size()];
+            int[] stops = new int[queries.size()];
+            for (int i = 0; i < queries.size(); i++) {
+                starts[i] = network.indexOf(queries.get(i)[0]);
+                stops[i] = network.indexOf(queries.get(i)[1]);
+            }
+            for (int i = 0; i < queries.size(); i++) {
+                engine.nextHop(starts[i], stops[i]); // Warm up, builds the workspace and any preprocessing
+            }
+            long overhead = threads.getCurrentThreadAllocatedBytes();
+            overhead = threads.getCurrentThreadAllocatedBytes() - overhead; // Cost of reading the counter itself
+            long before = threads.getCurrentThreadAllocatedBytes();
+            for (int i = 0; i < queries.size(); i++) {
+                engine.nextHop(starts[i], stops[i]);
+            }
+            long allocated = threads.getCurrentThreadAllocatedBytes() - before - overhead;
+            System.out.printf("%-22s %10d bytes allocated over %d next-hop queries %s%n", mode, allocated, queries.size(),
+                    allocated == 0 ? "(allocation free)" : "(ALLOCATES)");
+        }
+    }
+
+    // Method to time single heuristic evaluations: the original per-call degree conversion against the cached modes
+    private static void timeHeuristics(Graph graph) {
+        CompactGraph compactGraph = CompactGraph.fromGraph(graph);
+        int n = compactGraph.getNodeCount();
+        int evaluations = 5_000_000;
+        Random random = new Random(3);
+        int[] from = new int[4096];
+        int[] to = new int[4096];
+        for (int i = 0; i < from.length; i++) {
+            from[i] = random.nextInt(n);
+            to[i] = random.nextInt(n);
+        }
+        for (int round = 0; round < 2; round++) { // The first round warms up the JIT
+            double sum = 0;
+            long started = System.nanoTime();
+            for (int i = 0; i < evaluations; i++) {
+                int a = from[i & 4095];
+                int b = to[i & 4095];
+                sum += GeoDistance.haversine(compactGraph.getLatitude(a), compactGraph.getLongitude(a), compactGraph.getLatitude(b), compactGraph.getLongitude(b));
+            }
+            double degreesNanos = (double) (System.nanoTime() - started) / evaluations;
+            StringBuilder line = new StringBuilder(String.format("Heuristic ns/call: degrees %.1f", degreesNanos));
+            for (GeoDistance.Mode mode : GeoDistance.Mode.values()) {
+                GeometricHeuristic heuristic = new GeometricHeuristic(compactGraph, mode);
+                started = System.nanoTime();
+                for (int i = 0; i < evaluations; i++) {
+                    sum += heuristic.estimate(from[i & 4095], to[i & 4095]);
+                }
+                line.append(String.format(", %s %.1f", mode, (double) (System.nanoTime() - started) / evaluations));
+            }
+            if (round == 1) {
+                // Printing the sum of all estimates keeps the loops from being optimized away
+                System.out.println(line + String.format(", checksum %.6e", sum));
+            }
+        }
+    }
+
+    private static void timeSearchMode(Graph graph, List<Node[]> queries, RoutingEngine.SearchMode mode, double[] costs) {
+        RoutingEngine engine = new RoutingEngine(graph, mode);
+        long settled = 0;
+        long started = System.nanoTime();
+        for (int i = 0; i < queries.size(); i++) {
+            List<Node> path = engine.findPath(queries.get(i)[0], queries.get(i)[1]);
+            settled += engine.getLastSettledCount();
+            double cost = pathCost(graph, queries.get(i)[0], path);
+            if (Double.isNaN(costs[i])) {
+                costs[i] = cost;
+            } else if (Math.abs(costs[i] - cost) > 1e-9) {
+                System.out.println("Mismatch for query " + i + ": " + costs[i] + " vs " + cost);
+            }
+        }
+        double millis = (System.nanoTime() - started) / 1e6;
+        System.out.printf("%-22s %10.3f ms/query %10.1f settled/query%n", mode, millis / queries.size(), (double) settled / queries.size());
+    }
+
+    public static void main(String[] args) {
+        int gridSize = args.length > 0 ? Integer.parseInt(args[0]) : 40;
+        int queryCount = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+
+        compareMemory(gridSize); // Measured first, before the other runs leave garbage behind
+        Graph graph = buildGridGraph(gridSize, 42);
+        List<Node[]> queries = randomQueries(graph, queryCount, 7);
+        System.out.println("Grid " + gridSize + "x" + gridSize + ", " + queryCount + " queries");
+
+        double[] costs = new double[queryCount];
+        Arrays.fill(costs, Double.NaN);
+        timeSearchMode(graph, queries, RoutingEngine.SearchMode.BINARY_HEAP, costs); // Warm up and record the reference costs
+        timeSearchMode(graph, queries, RoutingEngine.SearchMode.BINARY_HEAP, costs);
+        timeSearchMode(graph, queries, RoutingEngine.SearchMode.LINEAR_SCAN, costs);
+        timeSearchMode(graph, queries, RoutingEngine.SearchMode.BIDIRECTIONAL_A_STAR, costs);
+        timeContractionHierarchy(graph, queries, costs);
+        timeLandmarks(graph, queries, costs);
+        timeSnapshot(graph, queries, costs);
+        timeImport(graph, queries, costs);
+        checkAllocations(graph, queries);
+        timeHeuristics(graph);
+    }
+}
@@ -0,0 +1,460 @@
+// This class is the A* routing shared by all of the simulations.
+// BINARY_HEAP runs on a RoadNetwork (the CompactGraph of the Graph, or a memory-mapped GraphSnapshot) with an indexed
+// heap open set and cached f-scores, LINEAR_SCAN is the original implementation that scans the whole open set on every
+// expansion and is kept for benchmarking. CONTRACTION_HIERARCHY preprocesses the network once (and again after the graph changes) and answers
+// queries with a bidirectional upward search. BIDIRECTIONAL_A_STAR searches from both ends with average potentials.
+// The heap search is guided by a pluggable Heuristic: the haversine distance by default, its cheaper chord or
+// equirectangular approximations (see GeoDistance), or ALT landmarks.
+// Callers that ask for the same node-to-node costs many times, such as stop plan insertions, can turn on a distance
+// cache. It holds up to a set number of results and is emptied when full or when the network changes.
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class RoutingEngine {
+
+    public enum SearchMode { BINARY_HEAP, LINEAR_SCAN, CONTRACTION_HIERARCHY, BIDIRECTIONAL_A_STAR }
+
+    public enum HeuristicMode { HAVERSINE, CHORD, EQUIRECTANGULAR, LANDMARKS }
+
+    private Graph graph;           // The graph representing the road network
+    private SearchMode searchMode; // Which A* implementation to run
+    private RoadNetwork network;   // Array form of the graph that the searches run on
+    private int indexedVersion;    // Graph version the network was built from
+    private ContractionHierarchy contractionHierarchy; // Built on first use in CONTRACTION_HIERARCHY mode
+    private BidirectionalAStar bidirectionalSearch; // Built on first use in BIDIRECTIONAL_A_STAR mode
+    private HeuristicMode heuristicMode; // Which lower bound guides the heap search
+    private Heuristic heuristic;   // Heuristic for the current network
+    private int landmarkCount;     // Number of landmarks when heuristicMode is LANDMARKS
+    private File landmarkFile;     // Where landmark tables are cached, null to always recompute them
+    private int lastSettledCount;  // Number of nodes expanded by the last LINEAR_SCAN search
+    private AtomicLong routePlanCount = new AtomicLong(); // Number of routes planned by nextMove since the engine was created
+
+    private int distanceCacheSize; // Most results the distance cache holds, 0 when it is off
+    private Map<Long, Double> distanceCache = new ConcurrentHashMap<>(); // Results of distance(start, stop) by LongIntHashMap key
+
+    private ThreadLocal<SearchWorkspace> workspaces = new ThreadLocal<>(); // Heap search state of each thread
+
+    public RoutingEngine(Graph graph) {
+        this(graph, SearchMode.BINARY_HEAP);
+    }
+
+    public RoutingEngine(Graph graph, SearchMode searchMode) {
+        //Constructor
+        this.graph = graph;
+        this.searchMode = searchMode;
+        this.heuristicMode = HeuristicMode.HAVERSINE;
+        this.indexedVersion = -1;
+    }
+
+    // Constructor for routing on a frozen network that has no Graph behind it, such as a GraphSnapshot (every mode but LINEAR_SCAN)
+    public RoutingEngine(RoadNetwork network) {
+        this.searchMode = SearchMode.BINARY_HEAP;
+        this.heuristicMode = HeuristicMode.HAVERSINE;
+        setNetwork(network);
+    }
+
+    public SearchMode getSearchMode() {
+        return searchMode;
+    }
+
+    public void setSearchMode(SearchMode searchMode) {
+        this.searchMode = searchMode;
+    }
+
+    public HeuristicMode getHeuristicMode() {
+        return heuristicMode;
+    }
+
+    // Method to guide the heap search with the great-circle distance (the default)
+    public void useHaversineHeuristic() {
+        useGeometricHeuristic(GeoDistance.Mode.HAVERSINE);
+    }
+
+    // Method to guide the heap search with one of the straight-line distance estimates
+    public void useGeometricHeuristic(GeoDistance.Mode mode) {
+        this.heuristicMode = HeuristicMode.valueOf(mode.name());
+        this.heuristic = null;
+    }
+
+    // Method to guide the heap search with landmark distances, tables are loaded from or saved to landmarkFile when it is not null
+    public void useLandmarkHeuristic(int landmarkCount, File landmarkFile) {
+        this.heuristicMode = HeuristicMode.LANDMARKS;
+        this.landmarkCount = landmarkCount;
+        this.landmarkFile = landmarkFile;
+        this.heuristic = null;
+    }
+
+    // Method to remember up to maxEntries distance results (0 turns the cache off). Results are kept until the cache
+    // fills up or the graph changes.
+    public void setDistanceCacheSize(int maxEntries) {
+        distanceCacheSize = maxEntries;
+        distanceCache.clear();
+    }
+
+    // Method to build what the current search mode needs before several threads share the engine, after which
+    // queries only read it (until the graph changes)
+    public void prepare() {
+        getNetwork();
+        if (searchMode == SearchMode.CONTRACTION_HIERARCHY) {
+            getContractionHierarchy();
+        } else if (searchMode == SearchMode.BIDIRECTIONAL_A_STAR) {
+            getBidirectionalSearch();
+            getHeuristic();
+        } else if (searchMode == SearchMode.BINARY_HEAP) {
+            getHeuristic();
+        }
+    }
+
+    // Method to get the heuristic for the current network, building the landmark tables if needed
+    public Heuristic getHeuristic() {
+        RoadNetwork network = getNetwork();
+        if (heuristic == null) {
+            if (heuristicMode == HeuristicMode.LANDMARKS) {
+                heuristic = landmarkFile == null
+                        ? LandmarkHeuristic.build(network, landmarkCount, LandmarkHeuristic.Selection.AVOID)
+                        : LandmarkHeuristic.loadOrBuild(network, landmarkCount, LandmarkHeuristic.Selection.AVOID, landmarkFile);
+            } else {
+                heuristic = new GeometricHeuristic(network, GeoDistance.Mode.valueOf(heuristicMode.name()));
+            }
+        }
+        return heuristic;
+    }
+
+    public int getLastSettledCount() {
+        if (searchMode == SearchMode.CONTRACTION_HIERARCHY && contractionHierarchy != null) {
+            return contractionHierarchy.getLastSettledCount();
+        }
+        if (searchMode == SearchMode.BIDIRECTIONAL_A_STAR && bidirectionalSearch != null) {
+            return bidirectionalSearch.getLastSettledCount();
+        }
+        if (searchMode == SearchMode.BINARY_HEAP && network != null) {
+            return workspace().getSettledCount();
+        }
+        return lastSettledCount;
+    }
+
+    // A* algorithm to determine the next node for the vehicle to move to
+    public Node aStarNextMove(Node startNode, Node stopNode) {
+        List<Node> path = findPath(startNode, stopNode);
+        if (path == null || path.isEmpty()) {
+            return null; // No path found, or the vehicle is already at the stop node
+        }
+        return path.get(0); // Return the first node in the path (next move)
+    }
+
+    // Method to get the next node for a vehicle heading to destination, following its planned route.
+    // A new route is only searched when there is none, the destination changed, the graph changed or the vehicle left the route.
+    public Node nextMove(Vehicle vehicle, Node destination) {
+        Route route = vehicle.getRoute();
+        if (route == null || !destination.equals(route.getDestination()) || route.getGraphVersion() != getGraphVersion()
+                || !vehicle.getCurrentNode().equals(route.getPositionNode())) {
+            route = planRoute(vehicle.getCurrentNode(), destination);
+            vehicle.setRoute(route);
+            if (route == null) {
+                return null; // No path found
+            }
+        }
+        return route.getNextNode(); // Null once the vehicle is at the destination
+    }
+
+    // Method to plan the full route between two nodes, or null if there is no path
+    public Route planRoute(Node startNode, Node stopNode) {
+        List<Node> path = findPath(startNode, stopNode);
+        if (path == null) {
+            return null;
+        }
+        routePlanCount.incrementAndGet();
+        RoadNetwork network = getNetwork();
+        List<Edge> edges = new ArrayList<>();
+        Node previous = startNode;
+        for (Node node : path) {
+            edges.add(new Edge(previous, node, edgeWeight(network, network.indexOf(previous), network.indexOf(node))));
+            previous = node;
+        }
+        return new Route(edges, stopNode, getGraphVersion());
+    }
+
+    public long getRoutePlanCount() {
+        return routePlanCount.get();
+    }
+
+    // Version of the graph routes are planned on, a frozen network never changes
+    private int getGraphVersion() {
+        return graph == null ? 0 : graph.getVersion();
+    }
+
+    // Cheapest edge weight between two adjacent nodes of the network
+    private static double edgeWeight(RoadNetwork network, int from, int to) {
+        double weight = Double.MAX_VALUE;
+        for (int edge = network.firstEdge(from); edge < network.endEdge(from); edge++) {
+            if (network.getTarget(edge) == to) {
+                weight = Math.min(weight, network.getWeight(edge));
+            }
+        }
+        return weight;
+    }
+
+    // Method to get the nodes after startNode up to and including stopNode, empty if they are the same node and null if there is no path
+    public List<Node> findPath(Node startNode, Node stopNode) {
+        if (searchMode == SearchMode.LINEAR_SCAN) {
+            return findPathLinearScan(startNode, stopNode);
+        }
+        if (searchMode == SearchMode.CONTRACTION_HIERARCHY || searchMode == SearchMode.BIDIRECTIONAL_A_STAR) {
+            return findPathBidirectional(startNode, stopNode);
+        }
+        return findPathHeap(startNode, stopNode);
+    }
+
+    // Path from one of the two bidirectional searches, mapped back to nodes
+    private List<Node> findPathBidirectional(Node startNode, Node stopNode) {
+        RoadNetwork network = getNetwork();
+        int start = network.indexOf(startNode);
+        int stop = network.indexOf(stopNode);
+        if (start < 0 || stop < 0) {
+            return null;
+        }
+        List<Integer> ids = searchMode == SearchMode.CONTRACTION_HIERARCHY
+                ? getContractionHierarchy().findPath(start, stop)
+                : getBidirectionalSearch().findPath(start, stop, getHeuristic());
+        if (ids == null) {
+            return null; // No path found
+        }
+        List<Node> path = new ArrayList<>();
+        for (int id : ids) {
+            path.add(network.getNode(id));
+        }
+        return path;
+    }
+
+    private List<Node> findPathHeap(Node startNode, Node stopNode) {
+        RoadNetwork network = getNetwork();
+        int start = network.indexOf(startNode);
+        int stop = network.indexOf(stopNode);
+        if (start < 0 || stop < 0 || !search(start, stop)) {
+            return null; // No path found
+        }
+        return reconstructPath(workspace(), start, stop);
+    }
+
+    // Method to get the shortest path cost between two nodes, 0 for the same node and infinity if there is no path
+    public double distance(Node startNode, Node stopNode) {
+        RoadNetwork network = getNetwork();
+        int start = network.indexOf(startNode);
+        int stop = network.indexOf(stopNode);
+        if (start < 0 || stop < 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return distance(start, stop);
+    }
+
+    // Method to get the shortest path cost between two dense ids. LINEAR_SCAN is answered by the heap search, which finds the same cost.
+    public double distance(int start, int stop) {
+        if (start == stop) {
+            return 0.0;
+        }
+        if (distanceCacheSize > 0) {
+            long key = LongIntHashMap.key(start, stop);
+            Double cached = distanceCache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+            if (distanceCache.size() >= distanceCacheSize) {
+                distanceCache.clear(); // Cheaper than tracking which results are old
+            }
+            double distance = searchDistance(start, stop);
+            distanceCache.put(key, distance);
+            return distance;
+        }
+        return searchDistance(start, stop);
+    }
+
+    private double searchDistance(int start, int stop) {
+        if (searchMode == SearchMode.CONTRACTION_HIERARCHY) {
+            return getContractionHierarchy().distance(start, stop);
+        }
+        if (searchMode == SearchMode.BIDIRECTIONAL_A_STAR) {
+            return getBidirectionalSearch().distance(start, stop, getHeuristic());
+        }
+        return search(start, stop) ? workspace().getGScore(stop) : Double.POSITIVE_INFINITY;
+    }
+
+    // Method to get the dense id of the first node after start on a shortest path to stop, or -1 if there is none
+    public int nextHop(int start, int stop) {
+        if (searchMode == SearchMode.CONTRACTION_HIERARCHY) {
+            return getContractionHierarchy().nextHop(start, stop);
+        }
+        if (searchMode == SearchMode.BIDIRECTIONAL_A_STAR) {
+            return getBidirectionalSearch().nextHop(start, stop, getHeuristic());
+        }
+        if (start == stop || !search(start, stop)) {
+            return -1;
+        }
+        SearchWorkspace workspace = workspace();
+        int current = stop;
+        while (workspace.getParent(current) != start) {
+            current = workspace.getParent(current);
+        }
+        return current;
+    }
+
+    // Heap based A* over the network, leaves the shortest path tree in this thread's workspace and returns whether stop was reached
+    private boolean search(int start, int stop) {
+        RoadNetwork network = getNetwork();
+        Heuristic heuristic = getHeuristic();
+        SearchWorkspace workspace = workspace();
+        IndexedMinHeap openSet = workspace.getOpenSet();
+        workspace.reset();
+
+        workspace.setGScore(start, 0.0);
+        workspace.setHScore(start, heuristic.estimate(start, stop));
+        openSet.insertOrDecrease(start, workspace.getHScore(start));
+
+        while (!openSet.isEmpty()) {
+            int current = openSet.poll(); // Node with the lowest cached f-score
+            workspace.close(current);
+            if (current == stop) {
+                return true;
+            }
+            double currentGScore = workspace.getGScore(current);
+
+            // Evaluate neighbors of the current node
+            for (int edge = network.firstEdge(current), end = network.endEdge(current); edge < end; edge++) {
+                int neighbor = network.getTarget(edge);
+                if (workspace.isClosed(neighbor)) continue; // Ignore already evaluated nodes
+
+                double tentativeGScore = currentGScore + network.getWeight(edge);
+                if (tentativeGScore >= workspace.getGScore(neighbor)) continue; // This path is not better
+
+                double hScore = workspace.getHScore(neighbor);
+                if (Double.isNaN(hScore)) {
+                    hScore = heuristic.estimate(neighbor, stop);
+                    workspace.setHScore(neighbor, hScore);
+                }
+                workspace.setParent(neighbor, current);
+                workspace.setGScore(neighbor, tentativeGScore);
+                openSet.insertOrDecrease(neighbor, tentativeGScore + hScore);
+            }
+        }
+        return false;
+    }
+
+    // Reconstruct the path from start to stop node by following the parent ids
+    private List<Node> reconstructPath(SearchWorkspace workspace, int start, int stop) {
+        List<Node> path = new ArrayList<>();
+        for (int current = stop; current != start; current = workspace.getParent(current)) {
+            path.add(network.getNode(current));
+        }
+        Collections.reverse(path);
+        return path;
+    }
+
+    // Search state of the calling thread, sized for the current network
+    private SearchWorkspace workspace() {
+        return SearchWorkspace.forThread(workspaces, network.getNodeCount());
+    }
+
+    // Method to get the network the searches run on, rebuilding the compact graph whenever the graph has changed since it was last built
+    public RoadNetwork getNetwork() {
+        if (graph != null && indexedVersion != graph.getVersion()) {
+            setNetwork(CompactGraph.fromGraph(graph));
+            indexedVersion = graph.getVersion();
+        }
+        return network;
+    }
+
+    // Method to get the contraction hierarchy of the current network, running the preprocessing if needed
+    public ContractionHierarchy getContractionHierarchy() {
+        RoadNetwork network = getNetwork();
+        if (contractionHierarchy == null || contractionHierarchy.getGraph() != network) {
+            contractionHierarchy = ContractionHierarchy.build(network);
+        }
+        return contractionHierarchy;
+    }
+
+    // Method to get the bidirectional search for the current network
+    public BidirectionalAStar getBidirectionalSearch() {
+        RoadNetwork network = getNetwork();
+        if (bidirectionalSearch == null || bidirectionalSearch.getGraph() != network) {
+            bidirectionalSearch = new BidirectionalAStar(network);
+        }
+        return bidirectionalSearch;
+    }
+
+    private void setNetwork(RoadNetwork network) {
+        this.network = network;
+        this.heuristic = null; // Heuristics are tied to one network
+        distanceCache.clear();  // So are cached distances
+    }
+
+    // Original A* that scans the whole open set for the lowest f-score on every expansion
+    private List<Node> findPathLinearScan(Node startNode, Node stopNode) {
+        Set<Node> openSet = new HashSet<>(); // Set of nodes to be evaluated
+        Set<Node> closedSet = new HashSet<>(); // Set of nodes already evaluated
+        Map<Node, Double> gScore = new HashMap<>(); // Map to store the cost of the cheapest path from startNode to each node
+        Map<Node, Node> cameFrom = new HashMap<>(); // Map to store the best parent node for each node
+
+        openSet.add(startNode);
+        gScore.put(startNode, 0.0); // The cost to reach the start node is 0
+        lastSettledCount = 0;
+
+        while (!openSet.isEmpty()) {
+            Node current = null;
+
+            // Find the node in openSet with the lowest fScore (gScore + heuristic)
+            for (Node node : openSet) {
+                if (current == null || gScore.get(node) + calculateHeuristic(node, stopNode) < gScore.get(current) + calculateHeuristic(current, stopNode)) {
+                    current = node;
+                }
+            }
+            lastSettledCount++;
+
+            // If the stopNode is reached, return the path leading to it
+            if (current.equals(stopNode)) {
+                List<Node> path = new ArrayList<>();
+                while (cameFrom.containsKey(current)) {
+                    path.add(current);
+                    current = cameFrom.get(current);
+                }
+                Collections.reverse(path);
+                return path;
+            }
+
+            openSet.remove(current);
+            closedSet.add(current);
+
+            // Evaluate neighbors of the current node
+            for (Edge edge : graph.getEdges(current)) {
+                Node neighbor = edge.getEdgeEnd();
+                if (closedSet.contains(neighbor)) continue; // Ignore already evaluated nodes
+
+                double tentativeGScore = gScore.get(current) + edge.getWeight(); // gScore for the neighbor
+
+                if (!openSet.contains(neighbor)) {
+                    openSet.add(neighbor); // Discover a new node
+                } else if (tentativeGScore >= gScore.get(neighbor)) {
+                    continue; // This path is not better
+                }
+
+                // This path is the best so far, record it
+                cameFrom.put(neighbor, current);
+                gScore.put(neighbor, tentativeGScore);
+            }
+        }
+
+        return null; // No path found
+    }
+
+    // Heuristic function using the Haversine formula for great-circle distance
+    public double calculateHeuristic(Node currentNode, Node goalNode) {
+        return GeoDistance.haversine(currentNode, goalNode); // Distance in kilometers
+    }
+}
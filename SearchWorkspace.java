@@ -0,0 +1,125 @@
+// This class holds the per-node state of one shortest path search in primitive arrays indexed by dense node id.
+// Instead of clearing the arrays before every search, each node carries the generation it was last written in,
+// and a node whose stamp is older than the current generation reads as unvisited. Starting a new search is
+// therefore O(1), and once a workspace exists a search allocates nothing.
+// A workspace is not thread safe, searches keep one per thread.
+
+import java.util.Arrays;
+
+public class SearchWorkspace {
+
+    private int[] visitedStamp;  // Generation in which each node's gScore/hScore/parent were last written
+    private int[] closedStamp;   // Generation in which each node was settled
+    private int generation;      // Current search
+    private double[] gScore;     // Cost of the cheapest known path from the source to each node
+    private double[] hScore;     // Cached heuristic (or potential) of each node, NaN until computed
+    private int[] parent;        // Previous node (or edge, depending on the search) of each node
+    private IndexedMinHeap openSet; // Open nodes keyed by their f-score
+    private int settledCount;    // Nodes settled by the current search
+    private int meetingNode;     // Where a bidirectional search met, -1 if it has not
+
+    public SearchWorkspace(int capacity) {
+        //Constructor
+        visitedStamp = new int[capacity];
+        closedStamp = new int[capacity];
+        gScore = new double[capacity];
+        hScore = new double[capacity];
+        parent = new int[capacity];
+        openSet = new IndexedMinHeap(capacity);
+        generation = 0;
+    }
+
+    // Method to get the workspace of the calling thread, replacing it if it is too small for the graph
+    public static SearchWorkspace forThread(ThreadLocal<SearchWorkspace> workspaces, int capacity) {
+        SearchWorkspace workspace = workspaces.get();
+        if (workspace == null || workspace.getCapacity() < capacity) {
+            workspace = new SearchWorkspace(capacity);
+            workspaces.set(workspace);
+        }
+        return workspace;
+    }
+
+    public int getCapacity() {
+        return visitedStamp.length;
+    }
+
+    // Method to start a new search, every node reads as unvisited and open afterwards
+    public void reset() {
+        openSet.clear(); // Only touches the nodes still in the heap from the previous search
+        settledCount = 0;
+        meetingNode = -1;
+        generation++;
+        if (generation == Integer.MAX_VALUE) {
+            // Stamps would wrap around, clear them once every two billion searches
+            Arrays.fill(visitedStamp, 0);
+            Arrays.fill(closedStamp, 0);
+            generation = 1;
+        }
+    }
+
+    private void visit(int node) {
+        if (visitedStamp[node] != generation) {
+            visitedStamp[node] = generation;
+            gScore[node] = Double.POSITIVE_INFINITY;
+            hScore[node] = Double.NaN;
+            parent[node] = -1;
+        }
+    }
+
+    public boolean isVisited(int node) {
+        return visitedStamp[node] == generation;
+    }
+
+    public double getGScore(int node) {
+        return visitedStamp[node] == generation ? gScore[node] : Double.POSITIVE_INFINITY;
+    }
+
+    public void setGScore(int node, double score) {
+        visit(node);
+        gScore[node] = score;
+    }
+
+    public double getHScore(int node) {
+        return visitedStamp[node] == generation ? hScore[node] : Double.NaN;
+    }
+
+    public void setHScore(int node, double score) {
+        visit(node);
+        hScore[node] = score;
+    }
+
+    public int getParent(int node) {
+        return visitedStamp[node] == generation ? parent[node] : -1;
+    }
+
+    public void setParent(int node, int parentNode) {
+        visit(node);
+        parent[node] = parentNode;
+    }
+
+    public boolean isClosed(int node) {
+        return closedStamp[node] == generation;
+    }
+
+    // Method to mark a node as settled and count it
+    public void close(int node) {
+        closedStamp[node] = generation;
+        settledCount++;
+    }
+
+    public IndexedMinHeap getOpenSet() {
+        return openSet;
+    }
+
+    public int getSettledCount() {
+        return settledCount;
+    }
+
+    public int getMeetingNode() {
+        return meetingNode;
+    }
+
+    public void setMeetingNode(int meetingNode) {
+        this.meetingNode = meetingNode;
+    }
+}
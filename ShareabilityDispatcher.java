@@ -0,0 +1,419 @@
+// This class dispatches a batch of ride requests the request-vehicle-trip (RTV) way, so vehicles with several seats
+// carry riders who can share instead of each request simply taking the closest free seat.
+// 1. Shareability: two requests can share if an empty vehicle starting at either pick-up could serve both within the
+//    limits. Only pairs whose pick-ups are within pairRadiusKm in a straight line are tried, at most maxPartners per request.
+// 2. Trips: for each vehicle, the groups of requests it could serve on top of its current stop plan. Singles come from
+//    the candidateVehicles nearest vehicles of each request; a group of k is only tried if every group of k - 1 in it
+//    is a feasible trip for the vehicle and its requests are pairwise shareable. Groups grow up to the vehicle's free
+//    seats and maxTripSize. Vehicles are enumerated in parallel.
+// 3. Assignment: trips are taken greedily, larger trips first and then by the cost they add, using each vehicle and
+//    each request at most once. This is the starting solution the RTV formulation gives its integer program; here it
+//    is the answer, so the batch finishes in bounded time.
+// A new request must be picked up within maxWait of the vehicle's current position and ride at most (1 + maxDetour)
+// times its direct cost. Both are in the units of the edge weights. Requests already in a vehicle's plan are not
+// checked again. Once the time budget is spent no more pairs or trips are tried and the batch assigns what it has.
+// Trips ask for the same legs over and over, so the routing engine's distance cache should be on.
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class ShareabilityDispatcher {
+
+    public static final int DEFAULT_MAX_TRIP_SIZE = 3;
+    public static final int DEFAULT_CANDIDATE_VEHICLES = 8;
+    public static final int DEFAULT_MAX_PARTNERS = 8;
+    public static final double DEFAULT_PAIR_RADIUS_KM = 3.0;
+    public static final long DEFAULT_TIME_BUDGET_NANOS = 500_000_000L; // Half a second per batch
+
+    // This class is a group of requests one vehicle can serve, with the plan that serves them
+    public static class Trip {
+
+        private Vehicle vehicle;
+        private List<RideRequest> requests;
+        private double addedCost; // What the trip adds to the cost of the vehicle's plan
+        private StopPlan plan;    // The vehicle's plan with the trip inserted
+        private int[] group;      // Batch positions of the requests, ascending
+
+        private Trip(Vehicle vehicle, List<RideRequest> requests, double addedCost, StopPlan plan, int[] group) {
+            this.vehicle = vehicle;
+            this.requests = requests;
+            this.addedCost = addedCost;
+            this.plan = plan;
+            this.group = group;
+        }
+
+        public Vehicle getVehicle() {
+            return vehicle;
+        }
+
+        public List<RideRequest> getRequests() {
+            return requests;
+        }
+
+        public double getAddedCost() {
+            return addedCost;
+        }
+
+        public StopPlan getPlan() {
+            return plan;
+        }
+    }
+
+    private VehicleIndex vehicleIndex;
+    private RoutingEngine routing;
+    private double maxWait;
+    private double maxDetour;
+    private int maxTripSize = DEFAULT_MAX_TRIP_SIZE;
+    private int candidateVehicles = DEFAULT_CANDIDATE_VEHICLES;
+    private int maxPartners = DEFAULT_MAX_PARTNERS;
+    private double pairRadiusKm = DEFAULT_PAIR_RADIUS_KM;
+    private long timeBudgetNanos = DEFAULT_TIME_BUDGET_NANOS;
+    private int parallelThreshold = 16; // Vehicles or pairs from which the work is split over the ForkJoin pool
+
+    private int lastShareablePairs;
+    private int lastTripCount;
+    private volatile boolean lastTimedOut; // Set by whichever vehicle's enumeration runs out of time
+
+    public ShareabilityDispatcher(VehicleIndex vehicleIndex, RoutingEngine routing, double maxWait, double maxDetour) {
+        //Constructor
+        this.vehicleIndex = vehicleIndex;
+        this.routing = routing;
+        this.maxWait = maxWait;
+        this.maxDetour = maxDetour;
+    }
+
+    // Method to choose trips for a batch of requests. Requests left out of every trip are up to the caller.
+    public List<Trip> dispatch(List<RideRequest> requests) {
+        long deadline = System.nanoTime() + timeBudgetNanos;
+        lastTimedOut = false;
+        int r = requests.size();
+        if (r == 0) {
+            lastShareablePairs = 0;
+            lastTripCount = 0;
+            return new ArrayList<>();
+        }
+        routing.prepare(); // Build the search structures before threads share them
+        double[] direct = new double[r];
+        ParallelScan.forEach(r, parallelThreshold, i -> direct[i] = routing.distance(requests.get(i).getPickUpPoint(), requests.get(i).getDropOffPoint()));
+
+        Set<Long> shareable = shareablePairs(requests, direct, deadline);
+        lastShareablePairs = shareable.size();
+
+        // Candidate requests of each vehicle, from the nearest vehicles of each request
+        Map<Vehicle, List<Integer>> candidatesOf = new IdentityHashMap<>();
+        List<Vehicle> vehicles = new ArrayList<>();
+        for (int i = 0; i < r; i++) {
+            for (Vehicle vehicle : vehicleIndex.nearest(requests.get(i).getPickUpPoint(), candidateVehicles, v -> freeSeats(v) > 0)) {
+                List<Integer> candidates = candidatesOf.get(vehicle);
+                if (candidates == null) {
+                    candidates = new ArrayList<>();
+                    candidatesOf.put(vehicle, candidates);
+                    vehicles.add(vehicle);
+                }
+                candidates.add(i);
+            }
+        }
+
+        // Feasible trips of every vehicle, each vehicle only writes its own slot
+        @SuppressWarnings("unchecked")
+        List<Trip>[] tripsOf = (List<Trip>[]) new List<?>[vehicles.size()];
+        ParallelScan.forEach(vehicles.size(), parallelThreshold,
+                v -> tripsOf[v] = enumerateTrips(vehicles.get(v), candidatesOf.get(vehicles.get(v)), requests, direct, shareable, deadline));
+
+        // Greedy assignment: larger trips first, then cheaper, then in vehicle and request order
+        List<Trip> trips = new ArrayList<>();
+        Map<Vehicle, Integer> vehicleOrder = new IdentityHashMap<>();
+        for (int v = 0; v < vehicles.size(); v++) {
+            trips.addAll(tripsOf[v]);
+            vehicleOrder.put(vehicles.get(v), v);
+        }
+        lastTripCount = trips.size();
+        trips.sort((a, b) -> {
+            if (a.group.length != b.group.length) return b.group.length - a.group.length;
+            if (a.addedCost != b.addedCost) return Double.compare(a.addedCost, b.addedCost);
+            if (a.vehicle != b.vehicle) return vehicleOrder.get(a.vehicle) - vehicleOrder.get(b.vehicle);
+            return Arrays.compare(a.group, b.group);
+        });
+        List<Trip> chosen = new ArrayList<>();
+        Set<Vehicle> usedVehicles = Collections.newSetFromMap(new IdentityHashMap<>());
+        boolean[] served = new boolean[r];
+        for (Trip trip : trips) {
+            if (usedVehicles.contains(trip.vehicle)) continue;
+            boolean free = true;
+            for (int i : trip.group) {
+                free &= !served[i];
+            }
+            if (!free) continue;
+            usedVehicles.add(trip.vehicle);
+            for (int i : trip.group) {
+                served[i] = true;
+            }
+            chosen.add(trip);
+        }
+        return chosen;
+    }
+
+    // Pairs of requests (as LongIntHashMap keys of their batch positions, lower first) that one vehicle could serve together
+    private Set<Long> shareablePairs(List<RideRequest> requests, double[] direct, long deadline) {
+        int r = requests.size();
+        // Grid over the pick-ups with cells at least pairRadiusKm wide, so partners are in the 3 x 3 block around a pick-up
+        double minCos = 1.0;
+        for (RideRequest request : requests) {
+            minCos = Math.min(minCos, request.getPickUpPoint().getCosLatitude());
+        }
+        double cellDegrees = Math.toDegrees(pairRadiusKm / GeoDistance.EARTH_RADIUS_KM) / Math.max(minCos, 1e-6);
+        Map<Long, List<Integer>> cells = new HashMap<>();
+        for (int i = 0; i < r; i++) {
+            cells.computeIfAbsent(cellKey(requests.get(i).getPickUpPoint(), cellDegrees, 0, 0), key -> new ArrayList<>()).add(i);
+        }
+
+        // The nearest maxPartners pick-ups within the radius of each request
+        Set<Long> candidatePairs = new HashSet<>();
+        for (int i = 0; i < r; i++) {
+            Node pickUp = requests.get(i).getPickUpPoint();
+            List<double[]> partners = new ArrayList<>();
+            for (int dr = -1; dr <= 1; dr++) {
+                for (int dc = -1; dc <= 1; dc++) {
+                    List<Integer> cell = cells.get(cellKey(pickUp, cellDegrees, dr, dc));
+                    if (cell == null) continue;
+                    for (int j : cell) {
+                        double distance = GeoDistance.haversine(pickUp, requests.get(j).getPickUpPoint());
+                        if (j != i && distance <= pairRadiusKm) {
+                            partners.add(new double[] {distance, j});
+                        }
+                    }
+                }
+            }
+            partners.sort((a, b) -> a[0] != b[0] ? Double.compare(a[0], b[0]) : Double.compare(a[1], b[1]));
+            for (int k = 0; k < Math.min(maxPartners, partners.size()); k++) {
+                int j = (int) partners.get(k)[1];
+                candidatePairs.add(LongIntHashMap.key(Math.min(i, j), Math.max(i, j)));
+            }
+        }
+
+        // Test the pairs with an empty two-seat vehicle starting at either pick-up
+        long[] pairs = candidatePairs.stream().mapToLong(Long::longValue).sorted().toArray();
+        boolean[] feasible = new boolean[pairs.length];
+        ParallelScan.forEach(pairs.length, parallelThreshold, p -> {
+            if (System.nanoTime() > deadline) {
+                lastTimedOut = true; // Untested pairs are left unshareable
+                return;
+            }
+            int i = (int) (pairs[p] >>> 32);
+            int j = (int) pairs[p];
+            int[] group = {i, j};
+            feasible[p] = bestPlan(new StopPlan(requests.get(i).getPickUpPoint(), 0, 2), group, requests, direct) != null
+                    || bestPlan(new StopPlan(requests.get(j).getPickUpPoint(), 0, 2), group, requests, direct) != null;
+        });
+        Set<Long> shareable = new HashSet<>();
+        for (int p = 0; p < pairs.length; p++) {
+            if (feasible[p]) shareable.add(pairs[p]);
+        }
+        return shareable;
+    }
+
+    private static long cellKey(Node node, double cellDegrees, int rowOffset, int columnOffset) {
+        int row = (int) Math.floor(node.getLatitude() / cellDegrees) + rowOffset;
+        int column = (int) Math.floor(node.getLongitude() / cellDegrees) + columnOffset;
+        return LongIntHashMap.key(row, column);
+    }
+
+    // Feasible trips of one vehicle, grown one request at a time
+    private List<Trip> enumerateTrips(Vehicle vehicle, List<Integer> candidates, List<RideRequest> requests, double[] direct,
+            Set<Long> shareable, long deadline) {
+        List<Trip> trips = new ArrayList<>();
+        int seats = Math.min(freeSeats(vehicle), maxTripSize);
+        StopPlan base = vehicle.getStopPlan() != null ? vehicle.getStopPlan().copy()
+                : new StopPlan(vehicle.getCurrentNode(), vehicle.getPickedUpRequests().size(), vehicle.getSeatCapacity());
+        base.setOrigin(vehicle.getCurrentNode(), routing);
+        double baseCost = base.getTotalCost();
+
+        // Trips of one request
+        List<int[]> level = new ArrayList<>();
+        Set<List<Integer>> feasible = new HashSet<>();
+        int[] singles = candidates.stream().mapToInt(Integer::intValue).sorted().toArray();
+        for (int i : singles) {
+            if (System.nanoTime() > deadline) {
+                lastTimedOut = true;
+                return trips;
+            }
+            StopPlan plan = bestPlan(base, new int[] {i}, requests, direct);
+            if (plan != null) {
+                trips.add(trip(vehicle, new int[] {i}, requests, plan.getTotalCost() - baseCost, plan));
+                level.add(new int[] {i});
+                feasible.add(Arrays.asList(i));
+            }
+        }
+
+        // Grow each trip by a later request that is shareable with all of its members and whose every sub-trip is feasible
+        for (int size = 2; size <= seats && !level.isEmpty(); size++) {
+            if (System.nanoTime() > deadline) {
+                lastTimedOut = true;
+                break;
+            }
+            List<int[]> next = new ArrayList<>();
+            for (int[] group : level) {
+                if (System.nanoTime() > deadline) {
+                    lastTimedOut = true;
+                    break;
+                }
+                for (int i : singles) {
+                    if (i <= group[group.length - 1] || !feasible.contains(Arrays.asList(i))) continue;
+                    int[] grown = Arrays.copyOf(group, size);
+                    grown[size - 1] = i;
+                    if (!allShareable(grown, shareable) || !allSubsetsFeasible(grown, feasible)) continue;
+                    StopPlan plan = bestPlan(base, grown, requests, direct);
+                    if (plan != null) {
+                        trips.add(trip(vehicle, grown, requests, plan.getTotalCost() - baseCost, plan));
+                        next.add(grown);
+                    }
+                }
+            }
+            for (int[] group : next) {
+                feasible.add(toList(group));
+            }
+            level = next;
+        }
+        return trips;
+    }
+
+    // Cheapest plan serving the group on top of the base plan within the wait and detour limits, or null if there is none.
+    // Every order of inserting the group's requests is tried, each request going to its cheapest positions.
+    private StopPlan bestPlan(StopPlan base, int[] group, List<RideRequest> requests, double[] direct) {
+        StopPlan best = null;
+        for (int[] order : permutations(group)) {
+            StopPlan plan = base.copy();
+            for (int i : order) {
+                StopPlan.Insertion insertion = plan.cheapestInsertion(requests.get(i), plan.getOrigin(), routing);
+                if (insertion == null) {
+                    plan = null;
+                    break;
+                }
+                plan.apply(requests.get(i), insertion);
+            }
+            if (plan != null && withinLimits(plan, group, requests, direct) && (best == null || plan.getTotalCost() < best.getTotalCost())) {
+                best = plan;
+            }
+        }
+        return best;
+    }
+
+    // Whether every request of the group is picked up within maxWait and rides at most (1 + maxDetour) times its direct cost
+    private boolean withinLimits(StopPlan plan, int[] group, List<RideRequest> requests, double[] direct) {
+        double time = 0;
+        double[] pickedUpAt = new double[group.length];
+        for (StopPlan.Stop stop : plan.getStops()) {
+            time += stop.getLegCost();
+            for (int k = 0; k < group.length; k++) {
+                if (stop.getRequest() != requests.get(group[k])) continue;
+                if (stop.isPickUp()) {
+                    if (time > maxWait) return false;
+                    pickedUpAt[k] = time;
+                } else if (time - pickedUpAt[k] > (1 + maxDetour) * direct[group[k]] + 1e-9) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean allShareable(int[] group, Set<Long> shareable) {
+        int last = group[group.length - 1];
+        for (int k = 0; k < group.length - 1; k++) {
+            if (!shareable.contains(LongIntHashMap.key(group[k], last))) return false;
+        }
+        return true;
+    }
+
+    private static boolean allSubsetsFeasible(int[] group, Set<List<Integer>> feasible) {
+        for (int skip = 0; skip < group.length; skip++) {
+            List<Integer> subset = new ArrayList<>();
+            for (int k = 0; k < group.length; k++) {
+                if (k != skip) subset.add(group[k]);
+            }
+            if (!feasible.contains(subset)) return false;
+        }
+        return true;
+    }
+
+    private static List<int[]> permutations(int[] group) {
+        List<int[]> result = new ArrayList<>();
+        permute(group.clone(), 0, result);
+        return result;
+    }
+
+    private static void permute(int[] items, int from, List<int[]> result) {
+        if (from == items.length) {
+            result.add(items.clone());
+            return;
+        }
+        for (int k = from; k < items.length; k++) {
+            int swap = items[from]; items[from] = items[k]; items[k] = swap;
+            permute(items, from + 1, result);
+            swap = items[from]; items[from] = items[k]; items[k] = swap;
+        }
+    }
+
+    private static List<Integer> toList(int[] group) {
+        List<Integer> list = new ArrayList<>();
+        for (int i : group) list.add(i);
+        return list;
+    }
+
+    private static Trip trip(Vehicle vehicle, int[] group, List<RideRequest> requests, double addedCost, StopPlan plan) {
+        List<RideRequest> members = new ArrayList<>();
+        for (int i : group) {
+            members.add(requests.get(i));
+        }
+        return new Trip(vehicle, members, addedCost, plan, group);
+    }
+
+    // Requests a vehicle can still be given, the same count Vehicle.addRideRequest checks
+    private static int freeSeats(Vehicle vehicle) {
+        return vehicle.getSeatCapacity() - vehicle.getRideRequests().size() - vehicle.getPickedUpRequests().size();
+    }
+
+    public int getLastShareablePairs() {
+        return lastShareablePairs;
+    }
+
+    public int getLastTripCount() {
+        return lastTripCount;
+    }
+
+    // Whether the last batch ran out of time while growing trips
+    public boolean lastTimedOut() {
+        return lastTimedOut;
+    }
+
+    public void setMaxTripSize(int maxTripSize) {
+        this.maxTripSize = maxTripSize;
+    }
+
+    public void setCandidateVehicles(int candidateVehicles) {
+        this.candidateVehicles = candidateVehicles;
+    }
+
+    public void setMaxPartners(int maxPartners) {
+        this.maxPartners = maxPartners;
+    }
+
+    public void setPairRadiusKm(double pairRadiusKm) {
+        this.pairRadiusKm = pairRadiusKm;
+    }
+
+    public void setTimeBudgetNanos(long timeBudgetNanos) {
+        this.timeBudgetNanos = timeBudgetNanos;
+    }
+
+    public void setParallelThreshold(int parallelThreshold) {
+        this.parallelThreshold = parallelThreshold;
+    }
+}
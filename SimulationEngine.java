@@ -0,0 +1,350 @@
+// This class is the tick loop every simulation runs: each time interval the requests that enter are handed to a
+// DispatchPolicy, which assigns them to vehicles or defers them, and then every vehicle with work is moved one node
+// along its route by a StopSelectionPolicy, which picks the stop it heads for. Everything the strategies share lives
+// here once: the pending requests, the routing engine, the vehicle grid, the fleet availability and the vehicle
+// metrics, so an improvement to any of them applies to every strategy.
+// The two policies are fixed for a whole run, so each call site only ever sees one implementation and the JIT can
+// inline it.
+// Time is driven by events: requests entering at a time interval, filed in the RequestCalendar, and the next move of
+// each vehicle that has requests, kept in a heap by fleet position. A vehicle is put in the heap when it is given work
+// and takes itself out once it has none, so a time interval only touches the vehicles that act in it. With
+// setSkipIdleTicks time also jumps straight to the next event, skipping the intervals in which nothing happens; the
+// outcome is the same, only their "Time Interval" lines are not printed.
+// By default a vehicle moves one node per time interval whatever the edge weight. With setSpeed a vehicle instead
+// travels along each edge for its weight divided by the speed, and its next event is its arrival at the edge's end:
+// only vehicles reaching a node within an interval are routed and given a new stop, and a fast vehicle can cover
+// several short edges in one interval. Times are kept exact between intervals, so a vehicle arriving at 3.4 leaves
+// again from 3.4. Making a stop takes a vehicle one time interval, as it does when moving node by node. Vehicles whose
+// edge ends by an interval are put at that node before its requests are dispatched, so requests are matched against
+// where vehicles are, not where they last set off from. A vehicle's active time and occupancy count its moves, one per
+// node; its travel time and occupancy time add up how long those moves took, which differs only along edges.
+// The print settings keep each simulation class's output format, so their sample runs print what they did before
+// they ran on this engine.
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+public class SimulationEngine {
+
+    private List<Vehicle> vehicles; // List of vehicles in the simulation
+    private RequestCalendar rideRequests; // Ride requests that have not entered yet, by time interval
+    private int timeInterval; // Last time interval of the simulation
+    private Graph graph; // The graph representing the road network
+    private RoutingEngine routingEngine; // Shared A* routing over the graph
+    private VehicleIndex vehicleIndex; // Grid over vehicle positions for nearest-vehicle queries
+    private FleetAvailability availability; // Idle vehicles and vehicles with free seats, kept up to date on every change
+    private int parallelThreshold = ParallelScan.DEFAULT_THRESHOLD; // Fleet size from which per-vehicle work runs in parallel
+    private Vehicle[] fleet; // The vehicles as an array, for policies that work on them by position
+    private Map<Vehicle, Integer> positions; // Position of each vehicle in the fleet array
+    private IndexedMinHeap vehicleEvents; // Time of the next move of each vehicle that has requests, by fleet position
+    private int[] movers; // Fleet positions of the vehicles moving at the current time interval
+    private double[] readyTimes; // Time each moving vehicle got to act, by fleet position
+    private int currentTime; // Time interval being simulated
+    private boolean moving; // Whether vehicles are being moved, they are scheduled after each move rather than on a change
+    private double speed; // Edge weight a vehicle covers per time interval, 0 to move one node per interval whatever the weight
+    private long vehicleEventCount; // Vehicle moves and arrivals handled since the engine was created
+    private boolean skipIdleTicks; // Whether time jumps to the next event instead of going one interval at a time
+    private StopSelectionPolicy stopSelectionPolicy; // Policy of the run in progress, told about every assignment
+    private boolean blankLinesAroundTicks; // Whether each time interval's header has an empty line before and after it
+    private boolean reportEntries = true; // Whether a line is printed for each request that enters the simulation
+    private String enteredPrefix = ""; // Printed in front of a request's id when it enters the simulation
+    private boolean reportStopTime; // Whether the final message says at which time interval the simulation stopped
+
+    // Constructor to initialize the simulation
+    public SimulationEngine(Graph graph, List<Vehicle> vehicles, Queue<RideRequest> rideRequests, int timeInterval) {
+        this.graph = graph;
+        this.routingEngine = new RoutingEngine(graph);
+        this.vehicles = vehicles;
+        this.fleet = vehicles.toArray(new Vehicle[0]);
+        this.positions = new IdentityHashMap<>();
+        this.vehicleEvents = new IndexedMinHeap(fleet.length);
+        this.movers = new int[fleet.length];
+        this.readyTimes = new double[fleet.length];
+        this.currentTime = 1;
+        for (int v = 0; v < fleet.length; v++) {
+            positions.put(fleet[v], v);
+            wake(fleet[v]); // Vehicles that start with requests move from the first time interval
+        }
+        this.vehicleIndex = new VehicleIndex(vehicles);
+        this.availability = new FleetAvailability(vehicles);
+        this.rideRequests = new RequestCalendar(rideRequests);
+        this.timeInterval = timeInterval;
+    }
+
+    // Method to run the simulation until the last time interval or until every request has been served
+    public void run(DispatchPolicy dispatchPolicy, StopSelectionPolicy stopSelectionPolicy) {
+        this.stopSelectionPolicy = stopSelectionPolicy;
+        int count = 1;
+        while (count <= timeInterval) {
+            if (blankLinesAroundTicks) {
+                System.out.println("");
+            }
+            System.out.println("Time Interval: " + count);
+            if (blankLinesAroundTicks) {
+                System.out.println("");
+            }
+            currentTime = count; // Vehicles given requests now move in this time interval
+            arriveVehicles(count); // Put vehicles at the nodes they reach by now, so dispatch sees where they are
+            allocateRideRequests(count, dispatchPolicy); // Allocate incoming ride requests to vehicles
+            moveVehicles(count, stopSelectionPolicy); // Move vehicles to their next node based on A* algorithm
+
+            // Stop once no request is waiting to enter and no vehicle has anything left to do
+            if (rideRequests.isEmpty() && availability.getIdleCount() == fleet.length) {
+                System.out.println("All ride requests have been fulfilled. Stopping the simulation"
+                        + (reportStopTime ? " at time interval: " + count + "." : "."));
+                break; // Stop the simulation once all ride requests are fulfilled
+            }
+            count = skipIdleTicks ? nextEventTime(count + 1) : count + 1; // Increment the time interval
+        }
+    }
+
+    // Earliest time interval from the given one on at which a request enters or a vehicle moves, Integer.MAX_VALUE if
+    // nothing is left to happen
+    private int nextEventTime(int from) {
+        int next = rideRequests.nextTime(from);
+        if (!vehicleEvents.isEmpty()) {
+            next = Math.min(next, Math.max(from, (int) Math.ceil(vehicleEvents.getKey(vehicleEvents.peek()))));
+        }
+        return next;
+    }
+
+    // Method to hand the requests that enter at this time interval to the dispatch policy
+    private void allocateRideRequests(int currentTime, DispatchPolicy dispatchPolicy) {
+        Queue<RideRequest> newRequests = new LinkedList<>(rideRequests.release(currentTime));
+        if (reportEntries) {
+            for (RideRequest request : newRequests) {
+                System.out.println(enteredPrefix + request.getRideRequestID() + " entered the simulation at time " + currentTime);
+            }
+        }
+        dispatchPolicy.allocate(this, newRequests);
+    }
+
+    // Method to move every vehicle whose next event is due, in fleet order, after the policy has looked at all of them.
+    // Vehicles that reach another node within the interval go again, in a later round.
+    private void moveVehicles(int time, StopSelectionPolicy stopSelectionPolicy) {
+        moving = true;
+        while (!vehicleEvents.isEmpty() && vehicleEvents.getKey(vehicleEvents.peek()) <= time) {
+            int count = 0;
+            while (!vehicleEvents.isEmpty() && vehicleEvents.getKey(vehicleEvents.peek()) <= time) {
+                readyTimes[vehicleEvents.peek()] = vehicleEvents.getKey(vehicleEvents.peek());
+                movers[count++] = vehicleEvents.poll();
+            }
+            Arrays.sort(movers, 0, count); // The heap does not keep equal times in fleet order
+            vehicleEventCount += count;
+            for (int i = 0; i < count; i++) {
+                arrive(fleet[movers[i]]); // Vehicles reaching a node within the interval, after dispatch
+            }
+            stopSelectionPolicy.beforeMoves(this, movers, count);
+            planHops(stopSelectionPolicy, count);
+            for (int i = 0; i < count; i++) {
+                int v = movers[i];
+                if (!fleet[v].isEmpty()) { // Only move vehicles with active ride requests
+                    stopSelectionPolicy.move(this, fleet[v], v);
+                    // Next event at the end of the edge it set off along, otherwise one time interval on
+                    if (fleet[v].getEdgeTarget() != null) {
+                        vehicleEvents.insertOrDecrease(v, fleet[v].getArrivalTime());
+                    } else if (!fleet[v].isEmpty()) {
+                        vehicleEvents.insertOrDecrease(v, readyTimes[v] + 1);
+                    }
+                }
+            }
+        }
+        moving = false;
+    }
+
+    // Method to route every moving vehicle to its destination before any of them moves, on several threads for many
+    // vehicles. Each search only writes its own vehicle's route and reads the network prepared beforehand, never the
+    // graph, and a route does not depend on the thread that planned it. The moves that follow then find their routes
+    // planned and run in fleet order exactly as they would have without this pass.
+    private void planHops(StopSelectionPolicy stopSelectionPolicy, int count) {
+        if (count < parallelThreshold || routingEngine.getSearchMode() == RoutingEngine.SearchMode.LINEAR_SCAN) {
+            return; // The moves route their vehicles one by one, LINEAR_SCAN searches are not safe to share
+        }
+        routingEngine.prepare();
+        ParallelScan.forEach(count, parallelThreshold, i -> {
+            Vehicle vehicle = fleet[movers[i]];
+            if (!vehicle.isEmpty()) {
+                Node destination = stopSelectionPolicy.destination(this, vehicle, movers[i]);
+                if (destination != null) {
+                    routingEngine.nextMove(vehicle, destination);
+                }
+            }
+        });
+    }
+
+    // Method to put every vehicle whose edge ends by this time interval at that node. Their events stay due, so they
+    // still act when the vehicles are moved.
+    private void arriveVehicles(int time) {
+        if (speed <= 0) {
+            return; // Node by node a vehicle is always at a node
+        }
+        int count = 0;
+        while (!vehicleEvents.isEmpty() && vehicleEvents.getKey(vehicleEvents.peek()) <= time) {
+            readyTimes[vehicleEvents.peek()] = vehicleEvents.getKey(vehicleEvents.peek());
+            movers[count++] = vehicleEvents.poll();
+        }
+        for (int i = 0; i < count; i++) {
+            arrive(fleet[movers[i]]);
+            vehicleEvents.insertOrDecrease(movers[i], readyTimes[movers[i]]);
+        }
+    }
+
+    // Method to put a vehicle at the end of the edge it is travelling along, if it is on one
+    private void arrive(Vehicle vehicle) {
+        if (vehicle.getEdgeTarget() != null) {
+            vehicle.arriveAtEdgeEnd();
+            vehicleIndex.update(vehicle); // Keep the grid in step with the move
+            availability.update(vehicle);
+        }
+    }
+
+    // Method to schedule a vehicle's next move in the current time interval if it has requests and nothing scheduled yet
+    private void wake(Vehicle vehicle) {
+        int v = positions.get(vehicle);
+        if (!moving && !vehicle.isEmpty() && !vehicleEvents.contains(v)) {
+            vehicleEvents.insertOrDecrease(v, currentTime);
+        }
+    }
+
+    // Method to give a request to a vehicle if it has room, returns whether it took it. The stop selection policy is
+    // told, e.g. to add the request to the vehicle's stop plan.
+    public boolean assign(Vehicle vehicle, RideRequest request) {
+        if (vehicle == null || !vehicle.addRideRequest(request)) {
+            return false;
+        }
+        availability.update(vehicle);
+        wake(vehicle);
+        stopSelectionPolicy.assigned(this, vehicle, request);
+        return true;
+    }
+
+    // Method to put a request no vehicle could take back for the next time interval
+    public void defer(RideRequest request) {
+        System.out.println("No available vehicle for Ride Request " + request.getRideRequestID() + ".");
+        postpone(request);
+    }
+
+    // Method to put a request the dispatch policy did not try back for the next time interval, without a message
+    public void postpone(RideRequest request) {
+        rideRequests.defer(request, request.getTimeInterval() + 1); // Requeue the request for the next time interval
+    }
+
+    // Method to move a vehicle one node towards a destination, returns whether it was already there at the start of the
+    // move, in which case the stop there can be made
+    public boolean moveTowards(Vehicle vehicle, Node destination) {
+        Node currentNode = vehicle.getCurrentNode();
+        Node nextNode = routingEngine.nextMove(vehicle, destination); // Next node on the vehicle's planned A* route
+        if (nextNode != null) {
+            System.out.println(vehicle.getVehicleID() + " moving from " + currentNode.getId() + " to " + nextNode.getId());
+            double duration = 1; // A move takes one time interval node by node
+            if (speed > 0) {
+                // Set off along the edge, the vehicle stays at its current node until its arrival event
+                double departure = readyTimes[positions.get(vehicle)];
+                duration = vehicle.getRoute().getNextEdge().getWeight() / speed;
+                vehicle.startEdge(nextNode, departure, departure + duration);
+            } else {
+                vehicle.setCurrentNode(nextNode); // Update vehicle's current node
+                vehicleIndex.update(vehicle); // Keep the grid in step with the move
+                availability.update(vehicle);
+            }
+            // Increment total active time and occupancy only if moving with active ride requests
+            vehicle.setTotalActiveTime(vehicle.getTotalActiveTime() + 1);
+            vehicle.setTotalOccupancy(vehicle.getTotalOccupancy() + vehicle.getCurrentOccupancy());
+            // The same weighted by how long the move takes, passengers only board or leave at nodes
+            vehicle.setTotalTravelTime(vehicle.getTotalTravelTime() + duration);
+            vehicle.setTotalOccupancyTime(vehicle.getTotalOccupancyTime() + vehicle.getCurrentOccupancy() * duration);
+        }
+        return currentNode.equals(destination);
+    }
+
+    // Method to make a vehicle's pick-up of a request it has reached
+    public void pickUp(Vehicle vehicle, RideRequest request) {
+        vehicle.addPickedUpRequest(request);
+        vehicle.getRideRequests().remove(request); // Remove from pending pick-ups
+    }
+
+    // Method to make a vehicle's drop-off of a request it has reached
+    public void dropOff(Vehicle vehicle, RideRequest request) {
+        vehicle.removePickedUpRequest(request); // Remove from picked-up requests
+        availability.update(vehicle); // A seat is free again
+    }
+
+    // Method to tell the engine a vehicle's requests changed outside assign, pickUp and dropOff
+    public void updateAvailability(Vehicle vehicle) {
+        availability.update(vehicle);
+        wake(vehicle);
+    }
+
+    // Getter for the routing engine, e.g. to switch the heuristic or search mode before running
+    public RoutingEngine getRoutingEngine() {
+        return routingEngine;
+    }
+
+    public VehicleIndex getVehicleIndex() {
+        return vehicleIndex;
+    }
+
+    public FleetAvailability getAvailability() {
+        return availability;
+    }
+
+    public List<Vehicle> getVehicles() {
+        return vehicles;
+    }
+
+    public Vehicle[] getFleet() {
+        return fleet;
+    }
+
+    public Graph getGraph() {
+        return graph;
+    }
+
+    public int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    // Setter for the fleet size from which per-vehicle work is done in parallel
+    public void setParallelThreshold(int parallelThreshold) {
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    // Setter for the edge weight a vehicle covers per time interval, 0 (the default) to move one node per interval
+    public void setSpeed(double speed) {
+        this.speed = speed;
+    }
+
+    public double getSpeed() {
+        return speed;
+    }
+
+    // Number of vehicle moves and edge arrivals handled so far, the engine's work is proportional to it
+    public long getVehicleEventCount() {
+        return vehicleEventCount;
+    }
+
+    // Method to let time jump straight to the next time interval in which a request enters or a vehicle moves
+    public void setSkipIdleTicks(boolean skipIdleTicks) {
+        this.skipIdleTicks = skipIdleTicks;
+    }
+
+    public void setBlankLinesAroundTicks(boolean blankLinesAroundTicks) {
+        this.blankLinesAroundTicks = blankLinesAroundTicks;
+    }
+
+    public void setReportEntries(boolean reportEntries) {
+        this.reportEntries = reportEntries;
+    }
+
+    public void setEnteredPrefix(String enteredPrefix) {
+        this.enteredPrefix = enteredPrefix;
+    }
+
+    public void setReportStopTime(boolean reportStopTime) {
+        this.reportStopTime = reportStopTime;
+    }
+}
@@ -1,183 +1,29 @@
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
 import java.util.Queue;
-import java.util.Set;
 
 //Final simulation class
 
 public class SimulationRun {
-	
-	private List<Vehicle> vehicles; // List of vehicles in the simulation
-    private Queue<RideRequest> rideRequests; // Queue to store incoming ride requests
-    private int timeInterval; // Current time interval in the simulation
-    private Graph graph; // The graph representing the road network
-    
-    // Constructor to initialize the simulation
-    public SimulationRun(Graph graph, List<Vehicle> vehicles, Queue<RideRequest> rideRequests, int timeInterval) {
-        this.graph = graph;
-        this.vehicles = vehicles;
-        this.rideRequests = rideRequests;
-        this.timeInterval = timeInterval;
-    }
-	
-    public void runSimulation(int maxTime) {
-    	int count = 1;
-        while (count <= timeInterval) {
-            System.out.println("Time Interval: " + count);
-            allocateRideRequests(); // Allocate incoming ride requests to vehicles
-            moveVehicles(); // Move vehicles to their next node based on A* algorithm
-            count++; // Increment the time interval
-        }
-    }
-	
-	// Method to allocate ride requests to the most suitable vehicle
-    private void allocateRideRequests() {
-    	while (!rideRequests.isEmpty()) {
-            RideRequest request = rideRequests.poll(); // Get the next ride request
-            Vehicle assignedVehicle = null;
-            double minDistance = Double.MAX_VALUE; // Initialize minimum distance as maximum possible
-
-            // Find the closest vehicle to the ride request's pick-up point
-            for (Vehicle vehicle : vehicles) {
-                Node vehicleCurrentNode = vehicle.getCurrentNode(); // Use the vehicle's current node
 
-                double distance = calculateHeuristic(vehicleCurrentNode, request.getPickUpPoint());
+    private SimulationEngine engine; // Tick loop, routing, indexes and metrics shared by every simulation
 
-                // Assign the ride request to the vehicle with the minimum distance
-                if (distance < minDistance) {
-                    minDistance = distance;
-                    assignedVehicle = vehicle;
-                }
-            }
-            
-            // If a suitable vehicle is found, add the ride request to it
-            if (assignedVehicle != null && assignedVehicle.addRideRequest(request)) {
-                System.out.println("Assigned " + request.getRideRequestID() +" to " + assignedVehicle.getVehicleID());
-                break;
-            } else {
-                System.out.println("No available vehicle for Ride Request.");
-            } 
-        }
+    // Constructor to initialize the simulation
+    public SimulationRun(Graph graph, List<Vehicle> vehicles, Queue<RideRequest> rideRequests, int timeInterval) {
+        this.engine = new SimulationEngine(graph, vehicles, rideRequests, timeInterval);
     }
-    
-    // Method to move each vehicle based on the A* algorithm
-    private void moveVehicles() {
-    	for (Vehicle vehicle : vehicles) {
-            if (!vehicle.isEmpty()) { // Only move vehicles with active ride requests
-                Node currentNode = vehicle.getCurrentNode(); // Vehicle's current position
-                Node destination = vehicle.getRideRequests().get(0).getDropOffPoint(); // Drop-off point of first ride request 
-                																	   //Will modify later to handle multiple riderequest for 1 car
 
-                Node nextNode = aStarNextMove(currentNode, destination); // Determine the next node using A*
-                
-                if (nextNode != null) {
-                    System.out.println( vehicle.getVehicleID() + " moving from " + currentNode.getId() + " to " + nextNode.getId());
-                    vehicle.setCurrentNode(nextNode); // Update vehicle's current node
-                    //Can consider keeping tracking of the route so add the currentNode every move
-                } else {
-                    System.out.println("No valid move for Vehicle at " + currentNode.getId());
-                }
-            }
-        }
+    // Getter for the routing engine, e.g. to switch the heuristic or search mode before running
+    public RoutingEngine getRoutingEngine() {
+        return engine.getRoutingEngine();
     }
 
- // A* algorithm to determine the next node for the vehicle to move to
-    private Node aStarNextMove(Node startNode, Node stopNode) {
-        //attributes are in a local scope because they need to be recalculated after every interval based off new information. So no need to store it.
-    	Set<Node> openSet = new HashSet<>(); // Set of nodes to be evaluated
-        Set<Node> closedSet = new HashSet<>(); // Set of nodes already evaluated
-        Map<Node, Double> gScore = new HashMap<>(); // Map to store the cost of the cheapest path from startNode to each node
-        Map<Node, Node> cameFrom = new HashMap<>(); // Map to store the best parent node for each node
-
-        openSet.add(startNode);
-        gScore.put(startNode, 0.0); // The cost to reach the start node is 0
-
-        while (!openSet.isEmpty()) {
-            Node current = null;
-
-            // Find the node in openSet with the lowest fScore (gScore + heuristic)
-            for (Node node : openSet) {
-                if (current == null || gScore.get(node) + calculateHeuristic(node, stopNode) < gScore.get(current) + calculateHeuristic(current, stopNode)) {
-                    current = node;
-                }
-            }
-
-            // If the stopNode is reached, return the node leading to it
-            if (current.equals(stopNode)) {
-                return reconstructPath(cameFrom, current);
-            }
-
-            openSet.remove(current);
-            closedSet.add(current);
-
-            // Evaluate neighbors of the current node
-            for (Edge edge : graph.getEdges(current)) {
-                Node neighbor = edge.getEdgeEnd();
-                if (closedSet.contains(neighbor)) continue; // Ignore already evaluated nodes
-
-                double tentativeGScore = gScore.get(current) + edge.getWeight(); // gScore for the neighbor
-
-                if (!openSet.contains(neighbor)) {
-                    openSet.add(neighbor); // Discover a new node
-                } else if (tentativeGScore >= gScore.get(neighbor)) {
-                    continue; // This path is not better
-                }
-
-                // This path is the best so far, record it
-                cameFrom.put(neighbor, current);
-                gScore.put(neighbor, tentativeGScore);
-                
-            }
-        }
-
-        return null; // No path found
-    }
-
-    // Reconstruct the path from start to stop node by following the cameFrom map
-    private Node reconstructPath(Map<Node, Node> cameFrom, Node current) {
-        List<Node> path = new ArrayList<>();
-        while (cameFrom.containsKey(current)) {
-            path.add(current);
-            current = cameFrom.get(current);
-        }
-        Collections.reverse(path);
-        
-     // Check if the path is empty before accessing it
-        if (!path.isEmpty()) {
-            return path.get(0); // Return the first node in the path (next move)
-        } else {
-            System.out.println("Error: No path found, returning null.");
-            return null; // Return null or handle it in the calling method
-        }
+    public void runSimulation(int maxTime) {
+        engine.setReportEntries(false);
+        engine.run(new NearestVehicleOneAtATimeDispatch(), new DropOffOnlyStopSelection());
     }
-    
- // Heuristic function using the Haversine formula for great-circle distance
-    private double calculateHeuristic(Node currentNode, Node goalNode) {
-        double R = 6371.0; // Earth's radius in kilometers
 
-        // Get latitude and longitude in radians
-        double lat1 = Math.toRadians(currentNode.getLatitude());
-        double lon1 = Math.toRadians(currentNode.getLongitude());
-        double lat2 = Math.toRadians(goalNode.getLatitude());
-        double lon2 = Math.toRadians(goalNode.getLongitude());
-
-        // Haversine formula
-        double dlat = lat2 - lat1;
-        double dlon = lon2 - lon1;
-        double a = Math.sin(dlat / 2) * Math.sin(dlat / 2) +
-                   Math.cos(lat1) * Math.cos(lat2) *
-                   Math.sin(dlon / 2) * Math.sin(dlon / 2);
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-
-        // Return the distance between the two nodes
-        return R * c; // Distance in kilometers
-    }
-    
     public static void main(String[] args) {
     	//Will read in values from the datasets I attached in the pictures 
     	//So the graph, list of vechiles, list of ride request and time intervals will all be setup 
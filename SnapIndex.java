@@ -0,0 +1,266 @@
+// This class snaps raw coordinates onto a road network, so requests that arrive as a latitude and longitude can be
+// routed. It holds two STR packed R-trees built from a RoadNetwork (a CompactGraph or a GraphSnapshot): one over the
+// nodes and one over the roads as straight segments, each two-way road once.
+// Coordinates are projected onto a plane with x = longitude * cos(reference latitude) and y = latitude, the reference
+// being the mean latitude of the network. Over a city the projection distorts distances by far less than the spacing
+// of the roads, so the nearest node or segment in the plane is the nearest on the ground; reported distances are the
+// exact haversine to the snapped point.
+
+import java.util.Arrays;
+
+public class SnapIndex {
+
+    // This class is the result of snapping a coordinate onto a road
+    public static class Snap {
+
+        private int edge;         // Forward edge index of the road in the network
+        private int from;         // Start node of that edge
+        private int to;           // End node of that edge
+        private double fraction;  // Position of the snapped point along the edge, 0 at from and 1 at to
+        private double latitude;  // The snapped point
+        private double longitude;
+        private double distanceKm; // Great-circle distance from the coordinate to the snapped point
+
+        private Snap(int edge, int from, int to, double fraction, double latitude, double longitude, double distanceKm) {
+            this.edge = edge;
+            this.from = from;
+            this.to = to;
+            this.fraction = fraction;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.distanceKm = distanceKm;
+        }
+
+        public int getEdge() {
+            return edge;
+        }
+
+        public int getFrom() {
+            return from;
+        }
+
+        public int getTo() {
+            return to;
+        }
+
+        public double getFraction() {
+            return fraction;
+        }
+
+        public double getLatitude() {
+            return latitude;
+        }
+
+        public double getLongitude() {
+            return longitude;
+        }
+
+        public double getDistanceKm() {
+            return distanceKm;
+        }
+
+        // Method to get the end of the road closer to the snapped point, where a vehicle would stop
+        public int getNearestNode() {
+            return fraction <= 0.5 ? from : to;
+        }
+    }
+
+    private RoadNetwork network;
+    private double cosReference;  // Cosine of the reference latitude of the projection
+    private double[] nodeX;       // Projected position of each node
+    private double[] nodeY;
+    private int[] segmentEdge;    // Forward edge index of each segment
+    private PackedRTree nodeTree;
+    private PackedRTree segmentTree;
+    // Distance callbacks for the trees, made once so queries do not allocate them
+    private PackedRTree.ItemDistance nodeDistance = this::squaredNodeDistance;
+    private PackedRTree.ItemDistance segmentDistance = this::squaredSegmentDistance;
+
+    private SnapIndex(RoadNetwork network) {
+        //Constructor, use build
+        this.network = network;
+    }
+
+    // Method to build the node and segment trees of a network
+    public static SnapIndex build(RoadNetwork network) {
+        SnapIndex index = new SnapIndex(network);
+        int n = network.getNodeCount();
+        double latitudeSum = 0;
+        for (int i = 0; i < n; i++) {
+            latitudeSum += network.getLatitude(i);
+        }
+        index.cosReference = n == 0 ? 1.0 : Math.cos(Math.toRadians(latitudeSum / n));
+        index.nodeX = new double[n];
+        index.nodeY = new double[n];
+        for (int i = 0; i < n; i++) {
+            index.nodeX[i] = network.getLongitude(i) * index.cosReference;
+            index.nodeY[i] = network.getLatitude(i);
+        }
+        index.nodeTree = new PackedRTree(index.nodeX, index.nodeY, index.nodeX, index.nodeY);
+
+        // One segment per road, the reverse edge of a two-way road is skipped
+        LongIntHashMap seen = new LongIntHashMap(network.getEdgeCount() / 2, -1);
+        int[] segments = new int[network.getEdgeCount()];
+        int segmentCount = 0;
+        for (int u = 0; u < n; u++) {
+            for (int edge = network.firstEdge(u); edge < network.endEdge(u); edge++) {
+                int v = network.getTarget(edge);
+                long key = LongIntHashMap.key(Math.min(u, v), Math.max(u, v));
+                if (u != v && !seen.containsKey(key)) {
+                    seen.put(key, edge);
+                    segments[segmentCount++] = edge;
+                }
+            }
+        }
+        index.segmentEdge = Arrays.copyOf(segments, segmentCount);
+        double[] minX = new double[segmentCount];
+        double[] minY = new double[segmentCount];
+        double[] maxX = new double[segmentCount];
+        double[] maxY = new double[segmentCount];
+        for (int s = 0; s < segmentCount; s++) {
+            int a = network.getSource(index.segmentEdge[s]);
+            int b = network.getTarget(index.segmentEdge[s]);
+            minX[s] = Math.min(index.nodeX[a], index.nodeX[b]);
+            minY[s] = Math.min(index.nodeY[a], index.nodeY[b]);
+            maxX[s] = Math.max(index.nodeX[a], index.nodeX[b]);
+            maxY[s] = Math.max(index.nodeY[a], index.nodeY[b]);
+        }
+        index.segmentTree = new PackedRTree(minX, minY, maxX, maxY);
+        return index;
+    }
+
+    public RoadNetwork getNetwork() {
+        return network;
+    }
+
+    // Cosine of the latitude the projection is taken at
+    public double getCosReference() {
+        return cosReference;
+    }
+
+    // Method to get the dense id of the node nearest to a coordinate, or -1 if the network is empty
+    public int nearestNode(double latitude, double longitude) {
+        return nodeTree.nearest(longitude * cosReference, latitude, nodeDistance, null);
+    }
+
+    // Method to snap a coordinate onto the nearest road, or null if the network has no roads
+    public Snap snap(double latitude, double longitude) {
+        double x = longitude * cosReference;
+        double y = latitude;
+        int segment = segmentTree.nearest(x, y, segmentDistance, null);
+        if (segment < 0) {
+            return null;
+        }
+        int edge = segmentEdge[segment];
+        int from = network.getSource(edge);
+        int to = network.getTarget(edge);
+        double fraction = projection(from, to, x, y);
+        double snappedLatitude = nodeY[from] + fraction * (nodeY[to] - nodeY[from]);
+        double snappedLongitude = (nodeX[from] + fraction * (nodeX[to] - nodeX[from])) / cosReference;
+        double distanceKm = GeoDistance.haversine(latitude, longitude, snappedLatitude, snappedLongitude);
+        return new Snap(edge, from, to, fraction, snappedLatitude, snappedLongitude, distanceKm);
+    }
+
+    // Method to snap many coordinates at once. They are visited in Z-order so that consecutive queries walk the same
+    // parts of the trees, and the results come back in input order.
+    public Snap[] snapAll(double[] latitudes, double[] longitudes) {
+        Snap[] snaps = new Snap[latitudes.length];
+        for (int i : spatialOrder(latitudes, longitudes)) {
+            snaps[i] = snap(latitudes[i], longitudes[i]);
+        }
+        return snaps;
+    }
+
+    // Method to find the nearest node of many coordinates at once, in Z-order like snapAll
+    public int[] nearestNodes(double[] latitudes, double[] longitudes) {
+        int[] nodes = new int[latitudes.length];
+        for (int i : spatialOrder(latitudes, longitudes)) {
+            nodes[i] = nearestNode(latitudes[i], longitudes[i]);
+        }
+        return nodes;
+    }
+
+    // Method to make a ride request from raw coordinates, pick-up and drop-off become the road ends nearest to their snapped points
+    public RideRequest snapRequest(String rideRequestID, double pickUpLatitude, double pickUpLongitude,
+            double dropOffLatitude, double dropOffLongitude, int timeInterval) {
+        Snap pickUp = snap(pickUpLatitude, pickUpLongitude);
+        Snap dropOff = snap(dropOffLatitude, dropOffLongitude);
+        if (pickUp == null || dropOff == null) {
+            return null; // No roads to snap to
+        }
+        return new RideRequest(rideRequestID, network.getNode(pickUp.getNearestNode()), network.getNode(dropOff.getNearestNode()), timeInterval);
+    }
+
+    private double squaredNodeDistance(int node, double x, double y) {
+        double dx = nodeX[node] - x;
+        double dy = nodeY[node] - y;
+        return dx * dx + dy * dy;
+    }
+
+    private double squaredSegmentDistance(int segment, double x, double y) {
+        int edge = segmentEdge[segment];
+        int from = network.getSource(edge);
+        int to = network.getTarget(edge);
+        double t = projection(from, to, x, y);
+        double dx = nodeX[from] + t * (nodeX[to] - nodeX[from]) - x;
+        double dy = nodeY[from] + t * (nodeY[to] - nodeY[from]) - y;
+        return dx * dx + dy * dy;
+    }
+
+    // Position along the segment from -> to of the point closest to (x, y), clamped to the segment
+    private double projection(int from, int to, double x, double y) {
+        double sx = nodeX[to] - nodeX[from];
+        double sy = nodeY[to] - nodeY[from];
+        double length = sx * sx + sy * sy;
+        if (length == 0) {
+            return 0.0;
+        }
+        double t = ((x - nodeX[from]) * sx + (y - nodeY[from]) * sy) / length;
+        return Math.max(0.0, Math.min(1.0, t));
+    }
+
+    // Indices of the coordinates sorted by the Z-order (Morton) code of their position in the network's bounding box
+    private int[] spatialOrder(double[] latitudes, double[] longitudes) {
+        double minX = Double.POSITIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY;
+        double maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < nodeX.length; i++) {
+            minX = Math.min(minX, nodeX[i]);
+            maxX = Math.max(maxX, nodeX[i]);
+            minY = Math.min(minY, nodeY[i]);
+            maxY = Math.max(maxY, nodeY[i]);
+        }
+        long[] keys = new long[latitudes.length];
+        for (int i = 0; i < keys.length; i++) {
+            int qx = quantize(longitudes[i] * cosReference, minX, maxX);
+            int qy = quantize(latitudes[i], minY, maxY);
+            keys[i] = (interleave(qx) | (interleave(qy) << 1)) << 31 | i; // 32 bit code above a 31 bit index
+        }
+        Arrays.sort(keys);
+        int[] order = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            order[i] = (int) (keys[i] & 0x7FFFFFFFL);
+        }
+        return order;
+    }
+
+    // Position of a value in [min, max] as a 16 bit integer, values outside are clamped
+    private static int quantize(double value, double min, double max) {
+        if (!(max > min)) {
+            return 0;
+        }
+        double scaled = (value - min) / (max - min) * 65535.0;
+        return (int) Math.max(0.0, Math.min(65535.0, scaled));
+    }
+
+    // Spread the 16 low bits of a value to the even bit positions
+    private static long interleave(int value) {
+        long v = value & 0xFFFFL;
+        v = (v | (v << 8)) & 0x00FF00FFL;
+        v = (v | (v << 4)) & 0x0F0F0F0FL;
+        v = (v | (v << 2)) & 0x33333333L;
+        v = (v | (v << 1)) & 0x55555555L;
+        return v;
+    }
+}
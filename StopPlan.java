@@ -0,0 +1,262 @@
+// This class is the ordered list of stops a vehicle will make, each one picking up or dropping off a ride request.
+// Every stop keeps the network cost of the leg that arrives at it, so the plan's length is known without routing it
+// again. A new request is inserted at its cheapest feasible positions: the pick-up somewhere in the plan and the
+// drop-off at or after it, never with more passengers on board than the vehicle has seats. Evaluating an insertion
+// takes four network distances per stop (to and from the pick-up and drop-off) plus the cached legs, and the best
+// pair of positions is found in one pass over the stops instead of trying every pair.
+// The first leg starts at the origin, the vehicle's position when the plan was last used; moving the origin only
+// re-costs that leg.
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class StopPlan {
+
+    // This class is one stop of a plan
+    public static class Stop {
+
+        private RideRequest request;
+        private boolean pickUp;   // True to pick the request up, false to drop it off
+        private double legCost;   // Network cost from the previous stop, or the origin, to this one
+
+        private Stop(RideRequest request, boolean pickUp, double legCost) {
+            this.request = request;
+            this.pickUp = pickUp;
+            this.legCost = legCost;
+        }
+
+        public RideRequest getRequest() {
+            return request;
+        }
+
+        public boolean isPickUp() {
+            return pickUp;
+        }
+
+        public double getLegCost() {
+            return legCost;
+        }
+
+        public Node getNode() {
+            return pickUp ? request.getPickUpPoint() : request.getDropOffPoint();
+        }
+    }
+
+    // This class is where a request would go in a plan and what it would add to the plan's cost
+    public static class Insertion {
+
+        private int pickUpAfter;  // Number of existing stops before the pick-up
+        private int dropOffAfter; // Number of existing stops before the drop-off, at least pickUpAfter
+        private double addedCost;
+        private double[] legs;    // Costs of the legs the insertion creates, in plan order
+
+        private Insertion(int pickUpAfter, int dropOffAfter, double addedCost, double[] legs) {
+            this.pickUpAfter = pickUpAfter;
+            this.dropOffAfter = dropOffAfter;
+            this.addedCost = addedCost;
+            this.legs = legs;
+        }
+
+        public int getPickUpAfter() {
+            return pickUpAfter;
+        }
+
+        public int getDropOffAfter() {
+            return dropOffAfter;
+        }
+
+        public double getAddedCost() {
+            return addedCost;
+        }
+    }
+
+    private List<Stop> stops = new ArrayList<>();
+    private Node origin;   // Where the first leg starts
+    private int onBoard;   // Passengers in the vehicle at the origin
+    private int capacity;  // Seats in the vehicle
+
+    public StopPlan(Node origin, int onBoard, int capacity) {
+        //Constructor
+        this.origin = origin;
+        this.onBoard = onBoard;
+        this.capacity = capacity;
+    }
+
+    // Method to get an independent copy of the plan, e.g. to try insertions without changing this one
+    public StopPlan copy() {
+        StopPlan copy = new StopPlan(origin, onBoard, capacity);
+        for (Stop stop : stops) {
+            copy.stops.add(new Stop(stop.request, stop.pickUp, stop.legCost));
+        }
+        return copy;
+    }
+
+    // Method to move the origin to the vehicle's current node, only the first leg is costed again
+    public void setOrigin(Node position, RoutingEngine routing) {
+        if (position.equals(origin)) {
+            return;
+        }
+        origin = position;
+        if (!stops.isEmpty()) {
+            stops.get(0).legCost = routing.distance(origin, stops.get(0).getNode());
+        }
+    }
+
+    // Method to find the cheapest feasible positions for a request's pick-up and drop-off, seen from the vehicle's position
+    public Insertion cheapestInsertion(RideRequest request, Node position, RoutingEngine routing) {
+        setOrigin(position, routing);
+        int n = stops.size();
+        Node pickUp = request.getPickUpPoint();
+        Node dropOff = request.getDropOffPoint();
+
+        // Node k is the origin for k = 0 and stop k - 1 after that. The load on the leg leaving node k is load[k].
+        double[] toPickUp = new double[n + 1];
+        double[] fromPickUp = new double[n + 1];
+        double[] toDropOff = new double[n + 1];
+        double[] fromDropOff = new double[n + 1];
+        int[] load = new int[n + 1];
+        load[0] = onBoard;
+        for (int k = 0; k <= n; k++) {
+            Node node = k == 0 ? origin : stops.get(k - 1).getNode();
+            if (k > 0) {
+                load[k] = load[k - 1] + (stops.get(k - 1).isPickUp() ? 1 : -1);
+                fromPickUp[k] = routing.distance(pickUp, node);
+                fromDropOff[k] = routing.distance(dropOff, node);
+            }
+            toPickUp[k] = routing.distance(node, pickUp);
+            toDropOff[k] = routing.distance(node, dropOff);
+        }
+        double direct = routing.distance(pickUp, dropOff);
+
+        // For each drop-off position j, pair it with the pick-up right before it or with the cheapest earlier pick-up
+        // position i from which every leg up to j still has a free seat
+        Insertion best = null;
+        double bestCost = Double.POSITIVE_INFINITY;
+        int bestPickUp = -1;
+        double bestPickUpCost = Double.POSITIVE_INFINITY;
+        for (int j = 0; j <= n; j++) {
+            if (load[j] >= capacity) {
+                bestPickUp = -1; // No pick-up at or before j can stay on board past here
+                bestPickUpCost = Double.POSITIVE_INFINITY;
+                continue;
+            }
+            double rejoin = j < n ? fromDropOff[j + 1] - stops.get(j).legCost : 0.0;
+            double together = toPickUp[j] + direct + rejoin;
+            if (together < bestCost) {
+                bestCost = together;
+                best = new Insertion(j, j, together, new double[] {toPickUp[j], direct, j < n ? fromDropOff[j + 1] : 0.0});
+            }
+            if (bestPickUp >= 0) {
+                double apart = bestPickUpCost + toDropOff[j] + rejoin;
+                if (apart < bestCost) {
+                    bestCost = apart;
+                    best = new Insertion(bestPickUp, j, apart, new double[] {toPickUp[bestPickUp], fromPickUp[bestPickUp + 1],
+                            toDropOff[j], j < n ? fromDropOff[j + 1] : 0.0});
+                }
+            }
+            if (j < n) {
+                double detour = toPickUp[j] + fromPickUp[j + 1] - stops.get(j).legCost;
+                if (detour < bestPickUpCost) {
+                    bestPickUp = j;
+                    bestPickUpCost = detour;
+                }
+            }
+        }
+        return best; // Null if every leg is full, or if no free leg has a path to and from the request
+    }
+
+    // Method to insert a request at its cheapest feasible positions, returns the cost it added to the plan. Returns NaN
+    // and leaves the plan as it is if the vehicle is full along the whole plan, so there is no seat for the request.
+    public double insert(RideRequest request, Node position, RoutingEngine routing) {
+        Insertion insertion = cheapestInsertion(request, position, routing);
+        if (insertion == null && isFull()) {
+            return Double.NaN;
+        }
+        if (insertion == null) {
+            // Unreachable somewhere: append so the request is not lost, the vehicle will find out when it routes there
+            double toPickUp = routing.distance(stops.isEmpty() ? origin : stops.get(stops.size() - 1).getNode(), request.getPickUpPoint());
+            double direct = routing.distance(request.getPickUpPoint(), request.getDropOffPoint());
+            insertion = new Insertion(stops.size(), stops.size(), toPickUp + direct, new double[] {toPickUp, direct, 0.0});
+        }
+        apply(request, insertion);
+        return insertion.addedCost;
+    }
+
+    // Whether every leg of the plan, from the origin on, already has as many passengers on board as there are seats
+    private boolean isFull() {
+        int load = onBoard;
+        for (int k = 0; k <= stops.size(); k++) {
+            if (k > 0) {
+                load += stops.get(k - 1).isPickUp() ? 1 : -1;
+            }
+            if (load < capacity) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Method to insert a request where a cheapestInsertion of the current plan said to
+    public void apply(RideRequest request, Insertion insertion) {
+        int i = insertion.pickUpAfter;
+        int j = insertion.dropOffAfter;
+        double[] legs = insertion.legs;
+        if (i == j) {
+            stops.add(i, new Stop(request, false, legs[1]));
+            stops.add(i, new Stop(request, true, legs[0]));
+            if (i + 2 < stops.size()) {
+                stops.get(i + 2).legCost = legs[2];
+            }
+        } else {
+            stops.add(j, new Stop(request, false, legs[2]));
+            if (j + 1 < stops.size()) {
+                stops.get(j + 1).legCost = legs[3];
+            }
+            stops.add(i, new Stop(request, true, legs[0]));
+            stops.get(i + 1).legCost = legs[1];
+        }
+    }
+
+    // Method to get the stop the vehicle is heading to, or null if the plan is empty
+    public Stop getNextStop() {
+        return stops.isEmpty() ? null : stops.get(0);
+    }
+
+    // Method to remove the next stop once the vehicle has made it, its node becomes the origin
+    public Stop completeNextStop() {
+        Stop stop = stops.remove(0);
+        origin = stop.getNode();
+        onBoard += stop.isPickUp() ? 1 : -1;
+        return stop;
+    }
+
+    // Network cost of driving the whole plan from the origin
+    public double getTotalCost() {
+        double total = 0;
+        for (Stop stop : stops) {
+            total += stop.legCost;
+        }
+        return total;
+    }
+
+    public List<Stop> getStops() {
+        return Collections.unmodifiableList(stops);
+    }
+
+    public int size() {
+        return stops.size();
+    }
+
+    public boolean isEmpty() {
+        return stops.isEmpty();
+    }
+
+    public Node getOrigin() {
+        return origin;
+    }
+
+    public int getOnBoard() {
+        return onBoard;
+    }
+}
@@ -0,0 +1,42 @@
+// This class moves each vehicle along its StopPlan. Every request assigned to a vehicle is inserted into its plan at
+// the cheapest feasible positions, and the vehicle heads for the plan's next stop. This is the stop selection of
+// SimulationProximity and SimulationNo2 with stop plans on.
+
+public class StopPlanSelection implements StopSelectionPolicy {
+
+    // Method to add a newly assigned request to the vehicle's stop plan
+    @Override
+    public void assigned(SimulationEngine engine, Vehicle vehicle, RideRequest request) {
+        if (vehicle.getStopPlan() == null) {
+            vehicle.setStopPlan(new StopPlan(vehicle.getCurrentNode(), vehicle.getPickedUpRequests().size(), vehicle.getSeatCapacity()));
+        }
+        double added = vehicle.getStopPlan().insert(request, vehicle.getCurrentNode(), engine.getRoutingEngine());
+        System.out.println(vehicle.getVehicleID() + " plan now has " + vehicle.getStopPlan().size() + " stops, " + request.getRideRequestID() + " added " + String.format("%.1f", added));
+    }
+
+    @Override
+    public Node destination(SimulationEngine engine, Vehicle vehicle, int v) {
+        return vehicle.getStopPlan().getNextStop().getNode();
+    }
+
+    // Method to move a vehicle towards the next stop of its plan, and make the stop once the vehicle is there
+    @Override
+    public void move(SimulationEngine engine, Vehicle vehicle, int v) {
+        StopPlan.Stop stop = vehicle.getStopPlan().getNextStop();
+        Node destination = stop.getNode();
+        RideRequest request = stop.getRequest();
+        System.out.println(vehicle.getVehicleID() + " is heading to " + (stop.isPickUp() ? "pickup" : "drop-off") + " point " + destination.getId() + " for " + request.getRideRequestID());
+
+        // Make the stop once the vehicle has reached it
+        if (engine.moveTowards(vehicle, destination)) {
+            vehicle.getStopPlan().completeNextStop();
+            if (stop.isPickUp()) {
+                engine.pickUp(vehicle, request);
+                System.out.println(vehicle.getVehicleID() + " has picked up a passenger at " + destination.getId() + " for " + request.getRideRequestID());
+            } else {
+                engine.dropOff(vehicle, request);
+                System.out.println(vehicle.getVehicleID() + " has dropped off a passenger at " + destination.getId() + " for " + request.getRideRequestID());
+            }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+// This interface is how a simulation decides where each vehicle heads next and makes its stops. Whenever vehicles are
+// due to act, beforeMoves is called once with them, then move is called for each of them, in fleet order. A move sets
+// off along one edge with SimulationEngine.moveTowards and makes the stop once the vehicle is at it.
+// By default every vehicle that has requests acts in every time interval and goes one node. With setSpeed a vehicle
+// acts only when it reaches a node, so it is left out of the intervals it spends on an edge and may act more than once
+// in an interval, in a later round of beforeMoves and move; with setSkipIdleTicks intervals in which no vehicle acts
+// are skipped. A run uses one implementation throughout, see SimulationEngine.
+
+public interface StopSelectionPolicy {
+
+    // Method to look at the vehicles about to move before any of them does, e.g. to choose their stops in parallel.
+    // movers holds their positions in engine.getFleet(), ascending, in its first count entries.
+    default void beforeMoves(SimulationEngine engine, int[] movers, int count) {
+    }
+
+    // Method to get the node move will head the vehicle for, without changing anything, so the engine can route it
+    // ahead of time (on several threads for many vehicles). Null if the policy cannot tell.
+    default Node destination(SimulationEngine engine, Vehicle vehicle, int v) {
+        return null;
+    }
+
+    // Method to move one vehicle, v is its position in engine.getFleet()
+    void move(SimulationEngine engine, Vehicle vehicle, int v);
+
+    // Method called once a request has been assigned to a vehicle through SimulationEngine.assign
+    default void assigned(SimulationEngine engine, Vehicle vehicle, RideRequest request) {
+    }
+}
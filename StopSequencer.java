@@ -0,0 +1,264 @@
+// This class finds the cheapest order for a vehicle to make all of its remaining stops: a pick-up and a drop-off for
+// every request assigned to it and a drop-off for every passenger on board, each pick-up before its drop-off, with
+// network distances as leg costs. It is an exact dynamic program over the stops still to be made. The cheapest way to
+// finish after a stop only depends on that stop and the set of stops left, so each (stops left, last stop) state is
+// solved once and remembered. States are keyed by the stops themselves, not by the call, so they stay valid from call
+// to call: after the vehicle makes a stop the rest of its order is already known, and only the legs from its new
+// position are routed.
+// A vehicle never holds more requests than seats, so no order can break the seat limit and it is not checked.
+// The number of states doubles with every stop, so above maxStops stops solve returns null and the caller falls back
+// to a heuristic. Remembered costs are only right while edge weights stay the same: call clear after they change.
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class StopSequencer {
+
+    public static final int DEFAULT_MAX_STOPS = 12;       // Six requests waiting for a pick-up, 4096 sets of stops
+    public static final int DEFAULT_MAX_STATES = 1 << 20; // States remembered before the memo starts over
+
+    // This class is an order of stops and what driving it costs
+    public static class Sequence {
+
+        private List<RideRequest> requests = new ArrayList<>();
+        private List<Boolean> pickUps = new ArrayList<>();
+        private double cost;
+
+        public int size() {
+            return requests.size();
+        }
+
+        public RideRequest getRequest(int k) {
+            return requests.get(k);
+        }
+
+        // Whether stop k picks its request up, otherwise it drops it off
+        public boolean isPickUp(int k) {
+            return pickUps.get(k);
+        }
+
+        public Node getNode(int k) {
+            return pickUps.get(k) ? requests.get(k).getPickUpPoint() : requests.get(k).getDropOffPoint();
+        }
+
+        public double getCost() {
+            return cost;
+        }
+    }
+
+    // Key of a state: the ids of the stops left, ascending, and then the id of the last stop made
+    private static class StateKey {
+
+        private int[] ids;
+        private int hash;
+
+        StateKey(int[] ids) {
+            this.ids = ids;
+            this.hash = Arrays.hashCode(ids);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof StateKey && Arrays.equals(ids, ((StateKey) other).ids);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private int maxStops = DEFAULT_MAX_STOPS;
+    private int maxStates = DEFAULT_MAX_STATES;
+    private Map<RideRequest, Integer> requestIds = new ConcurrentHashMap<>(); // Ids are never reused, see forget
+    private AtomicInteger nextRequestId = new AtomicInteger();
+    private Map<StateKey, double[]> states = new ConcurrentHashMap<>(); // {cost to finish, id of the next stop}
+    private long lastSolvedStates; // States the last call had to solve, meaningless while calls run on several threads
+
+    // Method to get the cheapest order of a vehicle's remaining stops from its position, or null if there are more
+    // than maxStops of them. Calls may run on several threads at once once the routing engine is prepared.
+    public Sequence solve(Node position, List<RideRequest> waiting, List<RideRequest> onBoard, RoutingEngine routing) {
+        int n = 2 * waiting.size() + onBoard.size();
+        if (n > maxStops) {
+            return null;
+        }
+        lastSolvedStates = 0;
+        if (states.size() >= maxStates) {
+            states.clear(); // Cheaper than tracking which states are old
+        }
+
+        // Stops sorted by id, so the ids of any subset come out ascending. A stop's id is twice its request's id,
+        // plus one for a drop-off.
+        int[] ids = new int[n];
+        int k = 0;
+        for (RideRequest request : waiting) {
+            int id = requestIds.computeIfAbsent(request, r -> nextRequestId.getAndIncrement());
+            ids[k++] = 2 * id;
+            ids[k++] = 2 * id + 1;
+        }
+        for (RideRequest request : onBoard) {
+            ids[k++] = 2 * requestIds.computeIfAbsent(request, r -> nextRequestId.getAndIncrement()) + 1;
+        }
+        Arrays.sort(ids);
+        RideRequest[] requests = new RideRequest[n];
+        for (RideRequest request : waiting) {
+            int id = requestIds.get(request);
+            requests[Arrays.binarySearch(ids, 2 * id)] = request;
+            requests[Arrays.binarySearch(ids, 2 * id + 1)] = request;
+        }
+        for (RideRequest request : onBoard) {
+            requests[Arrays.binarySearch(ids, 2 * requestIds.get(request) + 1)] = request;
+        }
+        Problem problem = new Problem(ids, requests, routing);
+
+        // The first stop is the only choice that depends on the position
+        Sequence sequence = new Sequence();
+        int all = (1 << n) - 1;
+        int first = -1;
+        double best = Double.POSITIVE_INFINITY;
+        for (int s = 0; s < n; s++) {
+            if (!problem.canVisit(s, all)) continue;
+            double cost = routing.distance(position, problem.node(s)) + finish(problem, all & ~(1 << s), s);
+            if (cost < best || first < 0) { // Unreachable stops still get an order
+                best = cost;
+                first = s;
+            }
+        }
+        if (first < 0) {
+            return sequence; // No stops left
+        }
+        sequence.cost = best;
+        int left = all & ~(1 << first);
+        int s = first;
+        while (true) {
+            sequence.requests.add(requests[s]);
+            sequence.pickUps.add((ids[s] & 1) == 0);
+            if (left == 0) {
+                return sequence;
+            }
+            s = Arrays.binarySearch(ids, (int) state(problem, left, s)[1]);
+            left &= ~(1 << s);
+        }
+    }
+
+    // Cheapest cost of making every stop in left after stop last
+    private double finish(Problem problem, int left, int last) {
+        return state(problem, left, last)[0];
+    }
+
+    // Remembered or newly solved state for the stops in left after stop last
+    private double[] state(Problem problem, int left, int last) {
+        if (left == 0) {
+            return new double[] {0.0, -1};
+        }
+        StateKey key = problem.key(left, last);
+        double[] state = states.get(key);
+        if (state != null) {
+            return state;
+        }
+        lastSolvedStates++;
+        int next = -1;
+        double best = Double.POSITIVE_INFINITY;
+        for (int s = 0; s < problem.size(); s++) {
+            if ((left & (1 << s)) == 0 || !problem.canVisit(s, left)) continue;
+            double cost = problem.leg(last, s) + finish(problem, left & ~(1 << s), s);
+            if (cost < best || next < 0) {
+                best = cost;
+                next = s;
+            }
+        }
+        state = new double[] {best, problem.id(next)}; // Some stop can always be made next
+        states.put(key, state);
+        return state;
+    }
+
+    // Method to drop what is known about a request once it has been dropped off, so its id is not kept forever
+    public void forget(RideRequest request) {
+        requestIds.remove(request);
+    }
+
+    // Method to forget every remembered state, e.g. after edge weights changed
+    public void clear() {
+        states.clear();
+    }
+
+    // Number of states the last call had to solve rather than find remembered
+    public long getLastSolvedStates() {
+        return lastSolvedStates;
+    }
+
+    public int getMaxStops() {
+        return maxStops;
+    }
+
+    public void setMaxStops(int maxStops) {
+        this.maxStops = Math.min(maxStops, 30); // Sets of stops are int masks
+    }
+
+    public void setMaxStates(int maxStates) {
+        this.maxStates = maxStates;
+    }
+
+    // The stops of one call, with the legs between them routed when first needed
+    private static class Problem {
+
+        private int[] ids;
+        private RideRequest[] requests;
+        private int[] pickUpOf; // Position of each drop-off's pick-up among the stops, -1 if the passenger is on board
+        private double[][] legs;
+        private RoutingEngine routing;
+
+        Problem(int[] ids, RideRequest[] requests, RoutingEngine routing) {
+            this.ids = ids;
+            this.requests = requests;
+            this.routing = routing;
+            int n = ids.length;
+            this.pickUpOf = new int[n];
+            this.legs = new double[n][n];
+            for (int s = 0; s < n; s++) {
+                Arrays.fill(legs[s], Double.NaN);
+                pickUpOf[s] = (ids[s] & 1) == 1 && s > 0 && ids[s - 1] == ids[s] - 1 ? s - 1 : -1;
+            }
+        }
+
+        int size() {
+            return ids.length;
+        }
+
+        int id(int s) {
+            return ids[s];
+        }
+
+        Node node(int s) {
+            return (ids[s] & 1) == 0 ? requests[s].getPickUpPoint() : requests[s].getDropOffPoint();
+        }
+
+        // A drop-off can be made once its pick-up is no longer left
+        boolean canVisit(int s, int left) {
+            return pickUpOf[s] < 0 || (left & (1 << pickUpOf[s])) == 0;
+        }
+
+        double leg(int from, int to) {
+            if (Double.isNaN(legs[from][to])) {
+                legs[from][to] = routing.distance(node(from), node(to));
+            }
+            return legs[from][to];
+        }
+
+        StateKey key(int left, int last) {
+            int[] key = new int[Integer.bitCount(left) + 1];
+            int k = 0;
+            for (int s = 0; s < ids.length; s++) {
+                if ((left & (1 << s)) != 0) {
+                    key[k++] = ids[s];
+                }
+            }
+            key[k] = ids[last];
+            return new StateKey(key);
+        }
+    }
+}
@@ -11,9 +11,15 @@ public class Vehicle {
 	private List<RideRequest> pickedUpRequests; // List of ride requests that have been picked up.
     private int seatCapacity; // Maximum number of passengers the vehicle can have.
     private Route route; // Route of the Vehicle.
+    private StopPlan stopPlan; // Ordered stops when the simulation plans them by cheapest insertion, null otherwise
     private boolean hasPassenger; // To track whether the vehicle has picked up a passenger 
+    private Node edgeTarget; // End of the edge the vehicle is travelling along, null while it is at its current node
+    private double departureTime; // When the vehicle left its current node along that edge
+    private double arrivalTime; // When it reaches the end of that edge
     private int totalActiveTime;
     private int totalOccupancy;
+    private double totalTravelTime; // Time intervals spent moving with requests, fractional when moving along edges
+    private double totalOccupancyTime; // Passengers on board summed over that time
     
     public Vehicle(String vechileID, Node currentNode, int seatCapacity){
     	this.vehicleID = vechileID;
@@ -75,6 +81,10 @@ public class Vehicle {
 	}
 
 	public void setCurrentNode(Node currentNode) {
+		// Moving to the next node of the planned route advances the route's cursor
+		if (route != null && currentNode != null && currentNode.equals(route.getNextNode())) {
+			route.advance();
+		}
 		this.currentNode = currentNode;
 	}
 
@@ -104,6 +114,43 @@ public class Vehicle {
 		this.route = route;
 	}
 
+	// Method to set the vehicle travelling from its current node to target, it stays at its current node until arriveAtEdgeEnd
+	public void startEdge(Node target, double departureTime, double arrivalTime) {
+		this.edgeTarget = target;
+		this.departureTime = departureTime;
+		this.arrivalTime = arrivalTime;
+	}
+
+	// Method to put the vehicle at the end of the edge it was travelling along
+	public void arriveAtEdgeEnd() {
+		setCurrentNode(edgeTarget);
+		edgeTarget = null;
+	}
+
+	public Node getEdgeTarget() {
+		return edgeTarget;
+	}
+
+	public double getArrivalTime() {
+		return arrivalTime;
+	}
+
+	// Share of the current edge travelled at the given time, 0 while the vehicle is at a node
+	public double getEdgeProgress(double time) {
+		if (edgeTarget == null || arrivalTime <= departureTime) {
+			return 0.0;
+		}
+		return Math.min(1.0, Math.max(0.0, (time - departureTime) / (arrivalTime - departureTime)));
+	}
+
+	public StopPlan getStopPlan() {
+		return stopPlan;
+	}
+
+	public void setStopPlan(StopPlan stopPlan) {
+		this.stopPlan = stopPlan;
+	}
+
 	public List<RideRequest> getPickedUpRequests() {
 		return pickedUpRequests;
 	}
@@ -140,5 +187,21 @@ public class Vehicle {
 	public void setTotalOccupancy(int totalOccupancy) {
 		this.totalOccupancy = totalOccupancy;
 	}
+
+	public double getTotalTravelTime() {
+		return totalTravelTime;
+	}
+
+	public void setTotalTravelTime(double totalTravelTime) {
+		this.totalTravelTime = totalTravelTime;
+	}
+
+	public double getTotalOccupancyTime() {
+		return totalOccupancyTime;
+	}
+
+	public void setTotalOccupancyTime(double totalOccupancyTime) {
+		this.totalOccupancyTime = totalOccupancyTime;
+	}
 	
 }
@@ -0,0 +1,213 @@
+// This class is a uniform grid over the positions of a fleet, used to find the vehicles nearest to a point without
+// scanning the whole fleet. Cells are cellDegrees of latitude by cellDegrees of longitude. A query visits rings of
+// cells around the point and stops once no cell outside the visited block can hold anything closer than the k-th
+// best vehicle found. Distances are the same haversine the simulations use, and ties are broken by position in the
+// fleet list, so a query returns exactly what a scan in fleet order keeping the first strictly closer vehicle would.
+// Positions are not tracked automatically: call update(vehicle) after its current node changes. Queries may run on
+// several threads at once as long as no update runs alongside them.
+// An index can be limited to the vehicles that pass a membership test, such as having a free seat. The test is run
+// again on every update, so also call update when the answer may have changed.
+// The fleet is assumed not to straddle the antimeridian.
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+public class VehicleIndex {
+
+    public static final double DEFAULT_CELL_DEGREES = 0.01; // Roughly 1 km
+
+    private double cellDegrees;
+    private List<Vehicle> fleet;
+    private Map<Vehicle, Integer> positions; // Position of each vehicle in the fleet list
+    private int[] vehicleCell;   // Cell id each vehicle is in, -1 if it has no current node
+    private int[] vehicleSlot;   // Where in its cell's member array each vehicle is
+    private LongIntHashMap cellIds; // Cell id of each (row, column) that has ever held a vehicle
+    private int[][] cellMembers = new int[16][]; // Fleet positions of the vehicles in each cell
+    private int[] cellSizes = new int[16];
+    private int cellCount;
+    // Bounding box of the cells that have ever held a vehicle, and the smallest cosine of any indexed latitude
+    private int minRow = Integer.MAX_VALUE;
+    private int maxRow = Integer.MIN_VALUE;
+    private int minColumn = Integer.MAX_VALUE;
+    private int maxColumn = Integer.MIN_VALUE;
+    private double minCosLatitude = 1.0;
+    private Predicate<Vehicle> membership; // Vehicles that fail it are left out of the cells
+    private long lastVisitedCount; // Vehicles whose distance the last query computed, meaningless while queries run on several threads
+
+    public VehicleIndex(List<Vehicle> fleet) {
+        this(fleet, DEFAULT_CELL_DEGREES);
+    }
+
+    public VehicleIndex(List<Vehicle> fleet, double cellDegrees) {
+        this(fleet, cellDegrees, vehicle -> true);
+    }
+
+    public VehicleIndex(List<Vehicle> fleet, double cellDegrees, Predicate<Vehicle> membership) {
+        //Constructor
+        this.fleet = fleet;
+        this.cellDegrees = cellDegrees;
+        this.membership = membership;
+        this.positions = new IdentityHashMap<>();
+        this.vehicleCell = new int[fleet.size()];
+        this.vehicleSlot = new int[fleet.size()];
+        this.cellIds = new LongIntHashMap(fleet.size(), -1);
+        Arrays.fill(vehicleCell, -1);
+        for (int i = 0; i < fleet.size(); i++) {
+            positions.put(fleet.get(i), i);
+            update(fleet.get(i));
+        }
+    }
+
+    // Method to move a vehicle to the cell of its current node, or out of the grid if it fails the membership test,
+    // call it whenever either may have changed
+    public void update(Vehicle vehicle) {
+        int position = positions.get(vehicle);
+        Node node = vehicle.getCurrentNode();
+        int cell = node == null || !membership.test(vehicle) ? -1 : cellFor(row(node.getLatitude()), column(node.getLongitude()));
+        if (cell == vehicleCell[position]) {
+            return;
+        }
+        if (vehicleCell[position] >= 0) {
+            // Swap remove from the old cell
+            int old = vehicleCell[position];
+            int slot = vehicleSlot[position];
+            int last = cellMembers[old][--cellSizes[old]];
+            cellMembers[old][slot] = last;
+            vehicleSlot[last] = slot;
+        }
+        vehicleCell[position] = cell;
+        if (cell >= 0) {
+            if (cellSizes[cell] == cellMembers[cell].length) {
+                cellMembers[cell] = Arrays.copyOf(cellMembers[cell], cellSizes[cell] * 2);
+            }
+            vehicleSlot[position] = cellSizes[cell];
+            cellMembers[cell][cellSizes[cell]++] = position;
+            minCosLatitude = Math.min(minCosLatitude, node.getCosLatitude());
+        }
+    }
+
+    // Method to get the vehicle nearest to a node that passes the filter, or null if none does
+    public Vehicle nearest(Node target, Predicate<Vehicle> filter) {
+        List<Vehicle> nearest = nearest(target, 1, filter);
+        return nearest.isEmpty() ? null : nearest.get(0);
+    }
+
+    // Method to get up to k vehicles that pass the filter, closest first (ties in fleet order)
+    public List<Vehicle> nearest(Node target, int k, Predicate<Vehicle> filter) {
+        double[] bestDistances = new double[k];
+        int[] bestPositions = new int[k];
+        int found = 0;
+        lastVisitedCount = 0;
+        if (cellCount > 0 && k > 0) {
+            int row = row(target.getLatitude());
+            int column = column(target.getLongitude());
+            // Start at the first ring that reaches an occupied cell
+            int ring = Math.max(0, Math.max(Math.max(minRow - row, row - maxRow), Math.max(minColumn - column, column - maxColumn)));
+            while (true) {
+                int firstRow = Math.max(row - ring, minRow);
+                int lastRow = Math.min(row + ring, maxRow);
+                for (int r = firstRow; r <= lastRow; r++) {
+                    boolean edgeRow = r == row - ring || r == row + ring;
+                    int step = edgeRow ? 1 : 2 * ring; // Inside rows only have their two end cells on the ring
+                    for (int c = column - ring; c <= column + ring; c += Math.max(step, 1)) {
+                        if (c < minColumn || c > maxColumn) continue;
+                        int cell = cellIds.get(LongIntHashMap.key(r, c));
+                        if (cell < 0) continue;
+                        for (int i = 0; i < cellSizes[cell]; i++) {
+                            int position = cellMembers[cell][i];
+                            Vehicle vehicle = fleet.get(position);
+                            if (!filter.test(vehicle)) continue;
+                            lastVisitedCount++;
+                            double distance = GeoDistance.haversine(vehicle.getCurrentNode(), target);
+                            found = offer(bestDistances, bestPositions, found, distance, position);
+                        }
+                    }
+                }
+                boolean coversAll = row - ring <= minRow && row + ring >= maxRow && column - ring <= minColumn && column + ring >= maxColumn;
+                if (coversAll || (found == k && bestDistances[k - 1] < lowerBoundOutside(target, row, column, ring))) {
+                    break;
+                }
+                ring++;
+            }
+        }
+        List<Vehicle> nearest = new ArrayList<>(found);
+        for (int i = 0; i < found; i++) {
+            nearest.add(fleet.get(bestPositions[i]));
+        }
+        return nearest;
+    }
+
+    // Number of vehicles the last query computed a distance for, a full scan would compute one per eligible vehicle
+    public long getLastVisitedCount() {
+        return lastVisitedCount;
+    }
+
+    // Insert (distance, position) into the sorted best list if it beats the current k-th entry
+    private static int offer(double[] distances, int[] positions, int found, double distance, int position) {
+        int k = distances.length;
+        if (found == k && !closer(distance, position, distances[k - 1], positions[k - 1])) {
+            return found;
+        }
+        int i = found < k ? found++ : k - 1;
+        while (i > 0 && closer(distance, position, distances[i - 1], positions[i - 1])) {
+            distances[i] = distances[i - 1];
+            positions[i] = positions[i - 1];
+            i--;
+        }
+        distances[i] = distance;
+        positions[i] = position;
+        return found;
+    }
+
+    private static boolean closer(double distance, int position, double otherDistance, int otherPosition) {
+        return distance < otherDistance || (distance == otherDistance && position < otherPosition);
+    }
+
+    // Smallest great-circle distance from the target to any point outside the block of cells within ring of its cell
+    private double lowerBoundOutside(Node target, int row, int column, int ring) {
+        double latitude = target.getLatitude();
+        double longitude = target.getLongitude();
+        double latitudeGap = Math.min(latitude - (row - ring) * cellDegrees, (row + ring + 1) * cellDegrees - latitude);
+        double longitudeGap = Math.min(longitude - (column - ring) * cellDegrees, (column + ring + 1) * cellDegrees - longitude);
+        // A point further north or south is at least the latitude gap away along a meridian
+        double northSouth = GeoDistance.EARTH_RADIUS_KM * Math.toRadians(latitudeGap);
+        // A point further east or west: haversine with the latitude term dropped and the other cosine at its smallest
+        double sinHalf = Math.sqrt(target.getCosLatitude() * minCosLatitude) * Math.sin(Math.toRadians(longitudeGap) / 2);
+        double eastWest = GeoDistance.EARTH_RADIUS_KM * 2 * Math.asin(Math.min(1.0, sinHalf));
+        return Math.min(northSouth, eastWest) * (1 - 1e-9); // Margin for rounding in the haversine
+    }
+
+    private int row(double latitude) {
+        return (int) Math.floor(latitude / cellDegrees);
+    }
+
+    private int column(double longitude) {
+        return (int) Math.floor(longitude / cellDegrees);
+    }
+
+    // Id of the cell at (row, column), creating it if it never held a vehicle
+    private int cellFor(int row, int column) {
+        long key = LongIntHashMap.key(row, column);
+        int cell = cellIds.get(key);
+        if (cell >= 0) {
+            return cell;
+        }
+        if (cellCount == cellSizes.length) {
+            int capacity = cellCount * 2;
+            cellMembers = Arrays.copyOf(cellMembers, capacity);
+            cellSizes = Arrays.copyOf(cellSizes, capacity);
+        }
+        cell = cellCount++;
+        cellIds.put(key, cell);
+        cellMembers[cell] = new int[4];
+        minRow = Math.min(minRow, row);
+        maxRow = Math.max(maxRow, row);
+        minColumn = Math.min(minColumn, column);
+        maxColumn = Math.max(maxColumn, column);
+        return cell;
+    }
+}